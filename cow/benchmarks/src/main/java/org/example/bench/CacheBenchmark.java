@@ -0,0 +1,61 @@
+package org.example.bench;
+
+import org.example.CompiledCowProgram;
+import org.example.CowProgramCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+    @Param({"hello", "big-output", "sparse-sweep"})
+    public String program;
+
+    private Path source;
+    private Path cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = Files.createTempFile("bench", ".cow");
+        Files.write(source, Corpus.load(program));
+        cache = CowProgramCache.defaultTarget(source);
+        CowProgramCache.compile(source, cache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(cache);
+    }
+
+    @Benchmark
+    public Object parseSource() throws IOException {
+        CompiledCowProgram compiled = CompiledCowProgram.compile(source);
+        return compiled.getOptimizedProgram();
+    }
+
+    @Benchmark
+    public Object loadCache() throws IOException {
+        return CowProgramCache.load(cache).getOptimizedProgram();
+    }
+}
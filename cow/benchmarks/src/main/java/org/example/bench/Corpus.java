@@ -0,0 +1,28 @@
+package org.example.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+final class Corpus {
+    private Corpus() {
+    }
+
+    static byte[] load(String name) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name + ".cow")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown corpus program: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static ReadableByteChannel channel(byte[] source) {
+        return Channels.newChannel(new ByteArrayInputStream(source));
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.bench;
+
+import org.example.CowInput;
+import org.example.CowInterpreter;
+import org.example.CowOutput;
+import org.example.ExecutionMode;
+import org.example.IntArrayTape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CowBenchmark {
+    @Param({"hello", "fib", "nested-loops", "tight-loops", "indirect", "big-output"})
+    public String program;
+
+    @Param({"REFERENCE", "OPCODE", "OPTIMIZED", "THREADED", "BYTECODE"})
+    public ExecutionMode engine;
+
+    private byte[] source;
+    private CowInterpreter loaded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = Corpus.load(program);
+        loaded = newInterpreter();
+        loaded.loadProgram(Corpus.channel(source));
+        loaded.execute();
+    }
+
+    private CowInterpreter newInterpreter() {
+        CowInterpreter interpreter = new CowInterpreter(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])),
+                new CowOutput(OutputStream.nullOutputStream()));
+        interpreter.setExecutionMode(engine);
+        // Most of the corpus never reads input, so the load-time prefix would leave nothing to time.
+        interpreter.setPrefixEnabled(false);
+        return interpreter;
+    }
+
+    @Benchmark
+    public CowInterpreter parse() throws IOException {
+        CowInterpreter interpreter = newInterpreter();
+        interpreter.loadProgram(Corpus.channel(source));
+        interpreter.prepare();
+        return interpreter;
+    }
+
+    @Benchmark
+    public CowInterpreter execute() {
+        loaded.execute();
+        return loaded;
+    }
+
+    @Benchmark
+    public CowInterpreter endToEnd() throws IOException {
+        CowInterpreter interpreter = newInterpreter();
+        interpreter.loadProgram(Corpus.channel(source));
+        interpreter.execute();
+        return interpreter;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.bench;
+
+import org.example.CowInput;
+import org.example.CowInterpreter;
+import org.example.CowOutput;
+import org.example.TapeKind;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TapeBenchmark {
+    @Param({"nested-loops", "sparse-sweep"})
+    public String program;
+
+    @Param({"DENSE", "PAGED", "OFFHEAP", "MAPPED"})
+    public TapeKind tape;
+
+    @Param({"32"})
+    public int cells;
+
+    private CowInterpreter interpreter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        interpreter = new CowInterpreter(tape.create(cells),
+                new CowInput(new ByteArrayInputStream(new byte[0])),
+                new CowOutput(OutputStream.nullOutputStream()));
+        interpreter.setPrefixEnabled(false);
+        interpreter.loadProgram(Corpus.channel(Corpus.load(program)));
+        interpreter.execute();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        interpreter.close();
+    }
+
+    @Benchmark
+    public CowInterpreter execute() {
+        interpreter.execute();
+        return interpreter;
+    }
+}
@@ -0,0 +1,249 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BatchRunner {
+    public enum Status {
+        OK,
+        SYNTAX_ERROR,
+        LIMIT_EXCEEDED,
+        IO_ERROR,
+        ERROR
+    }
+
+    public static final class Job {
+        private final Path program;
+        private final Path input;
+        private final Path output;
+
+        public Job(Path program, Path input, Path output) {
+            this.program = program;
+            this.input = input;
+            this.output = output;
+        }
+
+        public Path getProgram() {
+            return program;
+        }
+
+        public Path getInput() {
+            return input;
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+    }
+
+    public static final class Result {
+        private final Job job;
+        private final Status status;
+        private final long nanos;
+        private final String message;
+
+        Result(Job job, Status status, long nanos, String message) {
+            this.job = job;
+            this.status = status;
+            this.nanos = nanos;
+            this.message = message;
+        }
+
+        public Job getJob() {
+            return job;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final int jobs;
+    private ExecutionMode mode = ExecutionMode.OPTIMIZED;
+    private TapeKind tapeKind = TapeKind.DENSE;
+    private int cellBits = 32;
+    private long stepLimit = Long.MAX_VALUE;
+    private int maxTapeSize = Integer.MAX_VALUE;
+
+    public BatchRunner(int jobs) {
+        if (jobs < 1) {
+            throw new IllegalArgumentException("jobs must be positive: " + jobs);
+        }
+        this.jobs = jobs;
+    }
+
+    public void setExecutionMode(ExecutionMode mode) {
+        this.mode = mode;
+    }
+
+    public void setTapeKind(TapeKind tapeKind) {
+        setTapeKind(tapeKind, 32);
+    }
+
+    public void setTapeKind(TapeKind tapeKind, int cellBits) {
+        if (!tapeKind.supports(cellBits)) {
+            throw new IllegalArgumentException("The " + tapeKind.name().toLowerCase() + " tape does not support "
+                    + cellBits + "-bit cells");
+        }
+        this.tapeKind = tapeKind;
+        this.cellBits = cellBits;
+    }
+
+    public void setStepLimit(long stepLimit) {
+        this.stepLimit = stepLimit;
+    }
+
+    public void setMaxTapeSize(int maxTapeSize) {
+        this.maxTapeSize = maxTapeSize;
+    }
+
+    public static List<Job> discover(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            return scanDirectory(source);
+        }
+        return readManifest(source);
+    }
+
+    private static List<Job> scanDirectory(Path directory) throws IOException {
+        List<Path> programs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.cow")) {
+            for (Path program : stream) {
+                programs.add(program);
+            }
+        }
+        Collections.sort(programs);
+        List<Job> jobs = new ArrayList<>();
+        for (Path program : programs) {
+            Path input = sibling(program, ".in");
+            jobs.add(new Job(program, Files.exists(input) ? input : null, sibling(program, ".out")));
+        }
+        return jobs;
+    }
+
+    private static List<Job> readManifest(Path manifest) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<Job> jobs = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+");
+            if (fields.length > 3) {
+                throw new IOException("Invalid manifest line: " + line);
+            }
+            Path program = base.resolve(fields[0]);
+            Path input = fields.length > 1 && !fields[1].equals("-") ? base.resolve(fields[1]) : null;
+            Path output = fields.length > 2 ? base.resolve(fields[2]) : sibling(program, ".out");
+            jobs.add(new Job(program, input, output));
+        }
+        return jobs;
+    }
+
+    private static Path sibling(Path program, String extension) {
+        String name = program.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return program.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + extension);
+    }
+
+    public List<Result> run(List<Job> batch) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, Math.max(1, batch.size())));
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Job job : batch) {
+                futures.add(executor.submit(() -> runJob(job)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new Result(batch.get(i), Status.ERROR, 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    Result runJob(Job job) {
+        long start = System.nanoTime();
+        Status status = Status.OK;
+        String message = "";
+        try (InputStream in = job.input != null
+                ? Files.newInputStream(job.input) : new ByteArrayInputStream(new byte[0]);
+             OutputStream out = Files.newOutputStream(job.output)) {
+            CowInterpreter interpreter = new CowInterpreter(tapeKind.create(cellBits), new CowInput(in),
+                    new CowOutput(out, FlushPolicy.BUFFERED));
+            try {
+                interpreter.setExecutionMode(mode);
+                interpreter.setStepLimit(stepLimit);
+                interpreter.setMaxTapeSize(maxTapeSize);
+                interpreter.loadProgram(job.program.toString());
+                interpreter.execute();
+            } finally {
+                interpreter.close();
+            }
+        } catch (CowSyntaxException e) {
+            status = Status.SYNTAX_ERROR;
+            message = e.getMessage();
+        } catch (CowLimitExceededException e) {
+            status = Status.LIMIT_EXCEEDED;
+            message = e.getMessage();
+        } catch (IOException e) {
+            status = Status.IO_ERROR;
+            message = e.getMessage();
+        } catch (UncheckedIOException e) {
+            status = Status.IO_ERROR;
+            message = e.getCause().getMessage();
+        } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+            status = Status.ERROR;
+            message = e.toString();
+        }
+        return new Result(job, status, System.nanoTime() - start, message);
+    }
+
+    public static void writeSummary(List<Result> results, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        long failed = 0;
+        long totalNanos = 0;
+        out.println("status\ttime_ms\tprogram\tdetail");
+        for (Result result : results) {
+            if (result.status != Status.OK) {
+                failed++;
+            }
+            totalNanos += result.nanos;
+            String detail = result.message == null ? "" : result.message.replace('\t', ' ').replace('\n', ' ');
+            out.printf(Locale.ROOT, "%s\t%.3f\t%s\t%s%n", result.status, result.nanos / 1e6,
+                    result.job.program, detail);
+        }
+        out.printf(Locale.ROOT, "# %d programs, %d failed, %.3f ms total%n", results.size(), failed, totalNanos / 1e6);
+        out.flush();
+    }
+}
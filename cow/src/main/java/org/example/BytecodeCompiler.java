@@ -0,0 +1,365 @@
+package org.example;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class BytecodeCompiler {
+    public static final int MAX_PROGRAM_LENGTH = 200_000;
+    // Source generation and javac both recurse once per nested loop.
+    public static final int MAX_LOOP_DEPTH = 256;
+
+    private static final String PACKAGE = "org.example.generated";
+    private static final String CLASS_NAME = "CowProgram";
+    // Methods are split by the statements they contain, well below the 64 KB bytecode limit.
+    private static final int METHOD_LIMIT = 1500;
+
+    private final OptimizedProgram program;
+    private final List<StringBuilder> methods = new ArrayList<>();
+    private final int[] statementsBefore;
+
+    private BytecodeCompiler(OptimizedProgram program) {
+        this.program = program;
+        this.statementsBefore = new int[program.length() + 1];
+        for (int pc = 0; pc < program.length(); pc++) {
+            statementsBefore[pc + 1] = statementsBefore[pc] + statements(pc);
+        }
+    }
+
+    public static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    public static boolean canCompile(OptimizedProgram program) {
+        return program.length() <= MAX_PROGRAM_LENGTH && program.loopDepth() <= MAX_LOOP_DEPTH && isAvailable();
+    }
+
+    public static GeneratedProgram compile(OptimizedProgram program) {
+        return compile(program, 0);
+    }
+
+    static GeneratedProgram compile(OptimizedProgram program, int entry) {
+        String source = generateSource(program, entry);
+        Class<?> generated = new InMemoryCompiler().compile(PACKAGE + "." + CLASS_NAME, source);
+        try {
+            return (GeneratedProgram) generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate generated program", e);
+        }
+    }
+
+    static String generateSource(OptimizedProgram program, int from) {
+        BytecodeCompiler compiler = new BytecodeCompiler(program);
+        String entry = compiler.method(from, program.length());
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n\n");
+        sb.append("import org.example.CowExecution;\n");
+        sb.append("import org.example.GeneratedProgram;\n");
+        sb.append("import org.example.Tape;\n\n");
+        sb.append("public final class ").append(CLASS_NAME).append(" extends GeneratedProgram {\n");
+        sb.append("    @Override\n");
+        sb.append("    protected int run(CowExecution e, Tape t, int p) {\n");
+        sb.append("        return ").append(entry).append("(e, t, p);\n");
+        sb.append("    }\n");
+        for (StringBuilder method : compiler.methods) {
+            sb.append('\n').append(method);
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private String method(int from, int to) {
+        String name = "m" + methods.size();
+        StringBuilder sb = new StringBuilder();
+        methods.add(sb);
+        sb.append("    private static int ").append(name).append("(CowExecution e, Tape t, int p) {\n");
+
+        int pc = from;
+        while (pc < to) {
+            if (statementsBefore[pc] - statementsBefore[from] >= METHOD_LIMIT) {
+                indent(sb, 2).append("return ").append(method(pc, to)).append("(e, t, p);\n");
+                sb.append("    }\n");
+                return name;
+            }
+            pc = emit(sb, pc, 2);
+        }
+        sb.append("        return p;\n");
+        sb.append("    }\n");
+        return name;
+    }
+
+    // Statements emit() writes for the operation itself; nested operations are counted on their own.
+    private int statements(int pc) {
+        switch (program.ops[pc]) {
+            case Opcode.MOVE:
+                return 2;
+            case Opcode.RANGE:
+                return 6;
+            case Opcode.ZERO:
+                return program.args[pc] >= 0 ? 5 : 1;
+            case Opcode.LOOP_START:
+                return 3;
+            case Opcode.LOOP_END:
+                return 0;
+            case Opcode.MULTIPLY:
+                return program.idioms[program.args[pc]].offsets.length + 14;
+            case Opcode.EXEC:
+                return 11;
+            default:
+                return 1;
+        }
+    }
+
+    private void emitRange(StringBuilder sb, int from, int to, int depth) {
+        if (statementsBefore[to] - statementsBefore[from] > METHOD_LIMIT / 2) {
+            indent(sb, depth).append("p = ").append(method(from, to)).append("(e, t, p);\n");
+            return;
+        }
+        int pc = from;
+        while (pc < to) {
+            pc = emit(sb, pc, depth);
+        }
+    }
+
+    private int emit(StringBuilder sb, int pc, int depth) {
+        int arg = program.args[pc];
+        switch (program.ops[pc]) {
+            case Opcode.ADD:
+                indent(sb, depth).append("t.add(").append(cell(pc)).append(", ").append(arg).append(");\n");
+                return pc + 1;
+
+            case Opcode.MOVE:
+                indent(sb, depth).append("p = ").append(cell(pc)).append(";\n");
+                if (program.offsets[pc] > 0 || program.floors[pc] > 0) {
+                    indent(sb, depth).append("t.ensure(p);\n");
+                }
+                return pc + 1;
+
+            case Opcode.ENSURE:
+                indent(sb, depth).append("t.ensure(").append(cell(pc)).append(");\n");
+                return pc + 1;
+
+            case Opcode.SHIFT: {
+                int offset = program.offsets[pc];
+                indent(sb, depth).append(offset > 0 ? "p += " + offset : "p -= " + -offset).append(";\n");
+                return pc + 1;
+            }
+
+            case Opcode.RANGE: {
+                int fast = arg;
+                int end = program.args[fast];
+                indent(sb, depth).append("if (presize(e, t, p, ").append(program.offsets[pc]).append(", ")
+                        .append(program.floors[pc]).append(")) {\n");
+                indent(sb, depth + 1).append("do {\n");
+                emitRange(sb, fast + 1, end, depth + 2);
+                indent(sb, depth + 1).append("} while (t.get(p) != 0);\n");
+                indent(sb, depth).append("} else {\n");
+                emit(sb, pc + 1, depth + 1);
+                indent(sb, depth).append("}\n");
+                return end + 1;
+            }
+
+            case Opcode.ZERO:
+                if (arg >= 0) {
+                    indent(sb, depth).append("if (metered(e)) {\n");
+                    indent(sb, depth + 1).append("idiom(e, ").append(cell(pc)).append(", ").append(arg)
+                            .append(", ").append(program.sources[pc]).append(");\n");
+                    indent(sb, depth).append("} else {\n");
+                    indent(sb, depth + 1).append("t.set(").append(cell(pc)).append(", 0);\n");
+                    indent(sb, depth).append("}\n");
+                } else {
+                    indent(sb, depth).append("t.set(").append(cell(pc)).append(", 0);\n");
+                }
+                return pc + 1;
+
+            case Opcode.LOOP_START:
+                indent(sb, depth).append("while (t.get(p) != 0) {\n");
+                emitRange(sb, pc + 1, arg, depth + 1);
+                emitBackEdge(sb, arg, depth + 1);
+                indent(sb, depth).append("}\n");
+                return arg + 1;
+
+            case Opcode.MULTIPLY: {
+                LoopIdiom idiom = program.idioms[arg];
+                indent(sb, depth).append("if (t.get(p) != 0) {\n");
+                if (idiom.exit == pc) {
+                    emitIdiom(sb, pc, depth + 1);
+                    indent(sb, depth).append("}\n");
+                    return pc + 1;
+                }
+                indent(sb, depth + 1).append("if (p + ").append(idiom.minOffset).append(" >= 0) {\n");
+                emitIdiom(sb, pc, depth + 2);
+                indent(sb, depth + 1).append("} else {\n");
+                indent(sb, depth + 2).append("do {\n");
+                emitRange(sb, pc + 1, idiom.exit, depth + 3);
+                emitBackEdge(sb, idiom.exit, depth + 3);
+                indent(sb, depth + 2).append("} while (t.get(p) != 0);\n");
+                indent(sb, depth + 1).append("}\n");
+                indent(sb, depth).append("}\n");
+                return idiom.exit + 1;
+            }
+
+            case Opcode.EXEC:
+                emitIndirect(sb, depth);
+                return pc + 1;
+
+            default:
+                indent(sb, depth).append("single(e, ").append(program.ops[pc]).append(", p);\n");
+                return pc + 1;
+        }
+    }
+
+    private String cell(int pc) {
+        int offset = program.offsets[pc];
+        String moved = offset == 0 ? "p" : offset > 0 ? "p + " + offset : "p - " + -offset;
+        if (program.floors[pc] == offset) {
+            return moved;
+        }
+        return "Math.max(" + moved + ", " + program.floors[pc] + ")";
+    }
+
+    // Each mOO site gets its own switch over the decoded target, so the JIT profiles every site
+    // separately and the common targets run as the same statements direct code compiles to.
+    private static void emitIndirect(StringBuilder sb, int depth) {
+        indent(sb, depth).append("switch (decode(e, t.get(p))) {\n");
+        indent(sb, depth + 1).append("case ").append(Opcode.INC).append(": t.add(p, 1); break;\n");
+        indent(sb, depth + 1).append("case ").append(Opcode.DEC).append(": t.add(p, -1); break;\n");
+        indent(sb, depth + 1).append("case ").append(Opcode.RIGHT).append(": p++; t.ensure(p); break;\n");
+        indent(sb, depth + 1).append("case ").append(Opcode.LEFT).append(": p = Math.max(p - 1, 0); break;\n");
+        indent(sb, depth + 1).append("case ").append(Opcode.ZERO).append(": t.set(p, 0); break;\n");
+        for (byte opcode : new byte[]{Opcode.CHAR_IO, Opcode.REGISTER, Opcode.PRINT_INT, Opcode.READ_INT}) {
+            indent(sb, depth + 1).append("case ").append(opcode).append(": single(e, ").append(opcode)
+                    .append(", p); break;\n");
+        }
+        indent(sb, depth).append("}\n");
+    }
+
+    private void emitBackEdge(StringBuilder sb, int loopEnd, int depth) {
+        indent(sb, depth).append("backEdge(e, t, p, ").append(program.loopSpan(loopEnd))
+                .append(", ").append(program.sources[loopEnd]).append(");\n");
+    }
+
+    // Metered runs charge the back-edges the idiom replaces, so they go through CowExecution.
+    private void emitIdiom(StringBuilder sb, int pc, int depth) {
+        LoopIdiom idiom = program.idioms[program.args[pc]];
+        indent(sb, depth).append("if (metered(e)) {\n");
+        indent(sb, depth + 1).append("idiom(e, p, ").append(program.args[pc]).append(", ")
+                .append(program.sources[pc]).append(");\n");
+        indent(sb, depth).append("} else {\n");
+        indent(sb, depth + 1).append("int n = -t.get(p) * ").append(idiom.counterInverse).append(";\n");
+        indent(sb, depth + 1).append("t.ensure(p + ").append(idiom.maxOffset).append(");\n");
+        for (int i = 0; i < idiom.offsets.length; i++) {
+            indent(sb, depth + 1).append("t.add(p + ").append(idiom.offsets[i])
+                    .append(", ").append(idiom.factors[i]).append(" * n);\n");
+        }
+        indent(sb, depth + 1).append("t.set(p, 0);\n");
+        indent(sb, depth).append("}\n");
+    }
+
+    private static StringBuilder indent(StringBuilder sb, int depth) {
+        for (int i = 0; i < depth; i++) {
+            sb.append("    ");
+        }
+        return sb;
+    }
+
+    private static final class InMemoryCompiler {
+        private final Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+
+        Class<?> compile(String className, String source) {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null) {
+                throw new IllegalStateException("No Java compiler available, run on a JDK");
+            }
+
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+            JavaFileManager fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String name,
+                                                           JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(URI.create("mem:///" + name.replace('.', '/') + kind.extension), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            classes.put(name, out);
+                            return out;
+                        }
+                    };
+                }
+            };
+            JavaFileObject unit = new SimpleJavaFileObject(
+                    URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+
+            List<String> options = Arrays.asList("-classpath", classPath(), "-g:none", "-nowarn");
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    Collections.singletonList(unit)).call();
+            try {
+                fileManager.close();
+            } catch (IOException ignored) {
+            }
+            if (!success) {
+                StringBuilder message = new StringBuilder("Generated program failed to compile:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    message.append('\n').append(diagnostic.getMessage(null));
+                }
+                throw new IllegalStateException(message.toString());
+            }
+
+            ClassLoader loader = new ClassLoader(GeneratedProgram.class.getClassLoader()) {
+                @Override
+                protected Class<?> findClass(String name) throws ClassNotFoundException {
+                    ByteArrayOutputStream bytes = classes.get(name);
+                    if (bytes == null) {
+                        throw new ClassNotFoundException(name);
+                    }
+                    byte[] data = bytes.toByteArray();
+                    return defineClass(name, data, 0, data.length);
+                }
+            };
+            try {
+                return loader.loadClass(className);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Generated class was not produced", e);
+            }
+        }
+
+        private static String classPath() {
+            String own;
+            try {
+                own = Paths.get(GeneratedProgram.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+            } catch (URISyntaxException | SecurityException | NullPointerException e) {
+                own = "";
+            }
+            return own + File.pathSeparator + System.getProperty("java.class.path", "");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class CompiledCowProgram {
+    static final CompiledCowProgram EMPTY = new CompiledCowProgram(new byte[0]);
+
+    final byte[] code;
+    final int[] jumps;
+    private final long hash;
+    private volatile List<String> instructions;
+    private volatile OptimizedProgram optimized;
+    private volatile CowPrefix prefix;
+    private volatile ThreadedProgram threaded;
+    private volatile ThreadedProgram threadedFromStart;
+    private GeneratedProgram generated;
+    private boolean generatedResolved;
+    private GeneratedProgram generatedFromStart;
+    private boolean generatedFromStartResolved;
+
+    private CompiledCowProgram(byte[] code) {
+        this.jumps = resolveJumps(code);
+        this.code = code;
+        this.hash = hash(code);
+    }
+
+    CompiledCowProgram(byte[] code, int[] jumps, OptimizedProgram optimized) {
+        this.code = code;
+        this.jumps = jumps;
+        this.hash = hash(code);
+        this.optimized = optimized;
+    }
+
+    public static CompiledCowProgram compile(Path path) throws IOException {
+        return new CompiledCowProgram(CowTokenizer.tokenize(path));
+    }
+
+    public static CompiledCowProgram compile(ReadableByteChannel channel) throws IOException {
+        return new CompiledCowProgram(CowTokenizer.tokenize(channel));
+    }
+
+    public static CompiledCowProgram compile(byte[] source) {
+        return new CompiledCowProgram(CowTokenizer.tokenize(source));
+    }
+
+    public CowExecution newExecution(Tape tape, CowInput input, CowOutput output) {
+        return new CowExecution(this, tape, input, output);
+    }
+
+    public int getInstructionCount() {
+        return code.length;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public OptimizedProgram getOptimizedProgram() {
+        OptimizedProgram result = optimized;
+        if (result == null) {
+            result = CowOptimizer.optimize(code);
+            optimized = result;
+        }
+        return result;
+    }
+
+    CowPrefix getPrefix() {
+        CowPrefix result = prefix;
+        if (result == null) {
+            result = CowPrefix.evaluate(this, getOptimizedProgram(), CowPrefix.STEP_BUDGET);
+            prefix = result;
+        }
+        return result;
+    }
+
+    // Runs that cannot use the prefix (limits inside it, narrow cells) need a copy built from the start.
+    // Returns null when the loops nest too deeply for the tree; those run on the optimized engine.
+    ThreadedProgram getThreadedProgram(boolean prefixed) {
+        if (!ThreadedProgram.canCompile(getOptimizedProgram())) {
+            return null;
+        }
+        if (!prefixed) {
+            ThreadedProgram result = threadedFromStart;
+            if (result == null) {
+                result = ThreadedProgram.compile(getOptimizedProgram(), 0);
+                threadedFromStart = result;
+            }
+            return result;
+        }
+        ThreadedProgram result = threaded;
+        if (result == null) {
+            result = ThreadedProgram.compile(getOptimizedProgram(), getPrefix().entry);
+            threaded = result;
+        }
+        return result;
+    }
+
+    synchronized GeneratedProgram getGeneratedProgram(boolean prefixed) {
+        if (!prefixed) {
+            if (!generatedFromStartResolved) {
+                generatedFromStart = generate(0);
+                generatedFromStartResolved = true;
+            }
+            return generatedFromStart;
+        }
+        if (!generatedResolved) {
+            generated = generate(getPrefix().entry);
+            generatedResolved = true;
+        }
+        return generated;
+    }
+
+    // Programs javac rejects (a single idiom past the method size limit) run on the optimized engine.
+    private GeneratedProgram generate(int entry) {
+        OptimizedProgram program = getOptimizedProgram();
+        if (!BytecodeCompiler.canCompile(program)) {
+            return null;
+        }
+        try {
+            return BytecodeCompiler.compile(program, entry);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    public void prepare(ExecutionMode mode) {
+        prepare(mode, true);
+    }
+
+    public void prepare(ExecutionMode mode, boolean prefixed) {
+        if (mode == ExecutionMode.OPTIMIZED) {
+            if (prefixed) {
+                getPrefix();
+            } else {
+                getOptimizedProgram();
+            }
+        } else if (mode == ExecutionMode.THREADED) {
+            getThreadedProgram(prefixed);
+        } else if (mode == ExecutionMode.BYTECODE) {
+            getGeneratedProgram(prefixed);
+        }
+    }
+
+    List<String> instructions() {
+        List<String> result = instructions;
+        if (result == null) {
+            List<String> mnemonics = new ArrayList<>(code.length);
+            for (byte opcode : code) {
+                mnemonics.add(Opcode.mnemonic(opcode));
+            }
+            result = Collections.unmodifiableList(mnemonics);
+            instructions = result;
+        }
+        return result;
+    }
+
+    private static long hash(byte[] code) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte opcode : code) {
+            hash = (hash ^ opcode) * 0x100000001b3L;
+        }
+        return hash ^ code.length;
+    }
+
+    private static int[] resolveJumps(byte[] code) {
+        int[] jumps = new int[code.length];
+        int[] stack = new int[16];
+        int depth = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            if (code[pc] == Opcode.LOOP_START) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = pc;
+            } else if (code[pc] == Opcode.LOOP_END) {
+                if (depth == 0) {
+                    throw new CowSyntaxException("Unmatched moo", pc);
+                }
+                int start = stack[--depth];
+                jumps[start] = pc;
+                jumps[pc] = start;
+            }
+        }
+        if (depth > 0) {
+            throw new CowSyntaxException("Unmatched MOO", stack[depth - 1]);
+        }
+        return jumps;
+    }
+}
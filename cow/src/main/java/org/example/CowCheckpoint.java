@@ -0,0 +1,162 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public final class CowCheckpoint {
+    private static final int MAGIC = 0x434F5753;
+    private static final int VERSION = 2;
+
+    private final long programHash;
+    private final int cellBits;
+    private final int pc;
+    private final int pointer;
+    private final Integer register;
+    private final long inputOffset;
+    private final long steps;
+    private final int[] cells;
+
+    CowCheckpoint(long programHash, int cellBits, int pc, int pointer, Integer register, long inputOffset, long steps,
+            int[] cells) {
+        this.programHash = programHash;
+        this.cellBits = cellBits;
+        this.pc = pc;
+        this.pointer = pointer;
+        this.register = register;
+        this.inputOffset = inputOffset;
+        this.steps = steps;
+        this.cells = cells;
+    }
+
+    public long getProgramHash() {
+        return programHash;
+    }
+
+    public int getCellBits() {
+        return cellBits;
+    }
+
+    public int getPc() {
+        return pc;
+    }
+
+    public int getPointer() {
+        return pointer;
+    }
+
+    public Integer getRegister() {
+        return register;
+    }
+
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public int getTapeSize() {
+        return cells.length;
+    }
+
+    public int getCell(int index) {
+        return cells[index];
+    }
+
+    void restore(Tape tape) {
+        tape.clear();
+        tape.ensure(cells.length - 1);
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != 0) {
+                tape.set(i, cells[i]);
+            }
+        }
+    }
+
+    static int[] capture(Tape tape) {
+        int[] cells = new int[tape.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = tape.get(i);
+        }
+        return cells;
+    }
+
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(programHash);
+            out.writeInt(cellBits);
+            out.writeInt(pc);
+            out.writeInt(pointer);
+            out.writeBoolean(register != null);
+            out.writeInt(register == null ? 0 : register);
+            out.writeLong(inputOffset);
+            out.writeLong(steps);
+            out.writeInt(cells.length);
+            int index = 0;
+            while (index < cells.length) {
+                if (cells[index] == 0) {
+                    index++;
+                    continue;
+                }
+                int end = index;
+                while (end < cells.length && cells[end] != 0) {
+                    end++;
+                }
+                out.writeInt(index);
+                out.writeInt(end - index);
+                for (; index < end; index++) {
+                    out.writeInt(cells[index]);
+                }
+            }
+            out.writeInt(-1);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static CowCheckpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a COW checkpoint: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            long programHash = in.readLong();
+            int cellBits = in.readInt();
+            int pc = in.readInt();
+            int pointer = in.readInt();
+            boolean hasRegister = in.readBoolean();
+            int register = in.readInt();
+            long inputOffset = in.readLong();
+            long steps = in.readLong();
+            int size = in.readInt();
+            if (size < 1 || pointer < 0 || pointer >= size) {
+                throw new IOException("Corrupt checkpoint: " + file);
+            }
+            int[] cells = new int[size];
+            int start;
+            while ((start = in.readInt()) >= 0) {
+                int length = in.readInt();
+                if (length < 0 || start + length > size || start + length < 0) {
+                    throw new IOException("Corrupt checkpoint: " + file);
+                }
+                for (int i = 0; i < length; i++) {
+                    cells[start + i] = in.readInt();
+                }
+            }
+            return new CowCheckpoint(programHash, cellBits, pc, pointer, hasRegister ? register : null,
+                    inputOffset, steps, cells);
+        }
+    }
+}
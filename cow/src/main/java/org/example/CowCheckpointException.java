@@ -0,0 +1,7 @@
+package org.example;
+
+public class CowCheckpointException extends IllegalArgumentException {
+    public CowCheckpointException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,734 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+public final class CowExecution {
+    private final CompiledCowProgram program;
+    private final Tape tape;
+    private final CowInput input;
+    private final CowOutput output;
+    private int pointer;
+    private Integer register;
+    private ExecutionMode mode;
+    private CowProfiler profiler;
+    private long stepLimit = Long.MAX_VALUE;
+    private int maxTapeSize = Integer.MAX_VALUE;
+    private boolean prefixEnabled = true;
+    boolean metered;
+    private long steps;
+    private Path checkpointFile;
+    private long checkpointInterval = Long.MAX_VALUE;
+    private long nextCheckpoint;
+    private volatile boolean checkpointRequested;
+    private final Object checkpointLock = new Object();
+    private long checkpointsWritten;
+    private volatile boolean running;
+
+    CowExecution(CompiledCowProgram program, Tape tape, CowInput input, CowOutput output) {
+        this.program = program;
+        this.tape = Objects.requireNonNull(tape);
+        this.input = Objects.requireNonNull(input);
+        this.output = Objects.requireNonNull(output);
+        this.mode = ExecutionMode.OPTIMIZED;
+    }
+
+    public CompiledCowProgram getProgram() {
+        return program;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return mode;
+    }
+
+    public void setExecutionMode(ExecutionMode mode) {
+        this.mode = Objects.requireNonNull(mode);
+    }
+
+    public CowProfiler getProfiler() {
+        return profiler;
+    }
+
+    public void setProfiler(CowProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public long getStepLimit() {
+        return stepLimit;
+    }
+
+    public void setStepLimit(long stepLimit) {
+        if (stepLimit < 0) {
+            throw new IllegalArgumentException("Step limit must not be negative: " + stepLimit);
+        }
+        this.stepLimit = stepLimit;
+    }
+
+    public int getMaxTapeSize() {
+        return maxTapeSize;
+    }
+
+    public void setMaxTapeSize(int maxTapeSize) {
+        if (maxTapeSize < 1) {
+            throw new IllegalArgumentException("Tape size must be positive: " + maxTapeSize);
+        }
+        this.maxTapeSize = maxTapeSize;
+    }
+
+    public boolean isPrefixEnabled() {
+        return prefixEnabled;
+    }
+
+    // Benchmarks turn the prefix off so that every run executes the whole program.
+    public void setPrefixEnabled(boolean prefixEnabled) {
+        this.prefixEnabled = prefixEnabled;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public void setCheckpointing(Path file, long interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+    }
+
+    public void requestCheckpoint() {
+        checkpointRequested = true;
+    }
+
+    public boolean awaitCheckpoint(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (checkpointLock) {
+            long target = checkpointsWritten + 1;
+            while (checkpointsWritten < target && running) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                checkpointLock.wait(remaining);
+            }
+            return checkpointsWritten >= target;
+        }
+    }
+
+    public Tape getTape() {
+        return tape;
+    }
+
+    public int getPointer() {
+        return pointer;
+    }
+
+    public Integer getRegister() {
+        return register;
+    }
+
+    public void run() {
+        tape.clear();
+        pointer = 0;
+        register = null;
+        start(0, -1);
+    }
+
+    public void resume(CowCheckpoint checkpoint) throws IOException {
+        if (checkpoint.getProgramHash() != program.getHash()) {
+            throw new CowCheckpointException("Checkpoint was taken from a different program");
+        }
+        if (checkpoint.getCellBits() != tape.cellBits()) {
+            throw new CowCheckpointException("Checkpoint was taken with " + checkpoint.getCellBits()
+                    + "-bit cells, the tape has " + tape.cellBits());
+        }
+        int pc = checkpoint.getPc();
+        if (pc < 0 || pc >= program.code.length || program.code[pc] != Opcode.LOOP_END) {
+            throw new CowCheckpointException("Checkpoint does not point at a loop end: " + pc);
+        }
+        checkpoint.restore(tape);
+        pointer = checkpoint.getPointer();
+        register = checkpoint.getRegister();
+        if (input.skip(checkpoint.getInputOffset()) < checkpoint.getInputOffset()) {
+            throw new IOException("Input is shorter than the checkpointed offset " + checkpoint.getInputOffset());
+        }
+        start(checkpoint.getSteps(), pc);
+    }
+
+    private void start(long initialSteps, int resumeAt) {
+        steps = initialSteps;
+        nextCheckpoint = checkpointInterval == Long.MAX_VALUE ? Long.MAX_VALUE : steps + checkpointInterval;
+        metered = stepLimit != Long.MAX_VALUE || maxTapeSize != Integer.MAX_VALUE || checkpointFile != null;
+        running = true;
+
+        try {
+            dispatch(resumeAt);
+            if (metered && tape.size() > maxTapeSize) {
+                throw new CowLimitExceededException("Tape limit of " + maxTapeSize + " cells exceeded",
+                        steps, program.code.length);
+            }
+        } finally {
+            output.flush();
+            synchronized (checkpointLock) {
+                running = false;
+                checkpointLock.notifyAll();
+            }
+        }
+    }
+
+    private void dispatch(int resumeAt) {
+        int start = resumeAt < 0 ? 0 : program.jumps[resumeAt] + 1;
+        if (profiler != null) {
+            executeProfiled(profiler, start);
+            return;
+        }
+        switch (mode) {
+            case REFERENCE:
+                executeReference(start);
+                break;
+            case OPCODE:
+                executeOpcodes(start);
+                break;
+            case THREADED:
+                if (resumeAt >= 0) {
+                    resumeOptimized(resumeAt);
+                } else {
+                    boolean prefixed = applyPrefix();
+                    ThreadedProgram threaded = program.getThreadedProgram(prefixed);
+                    if (threaded != null) {
+                        pointer = threaded.run(this, tape, pointer);
+                    } else {
+                        executeOptimized(program.getOptimizedProgram(), prefixed ? program.getPrefix().entry : 0);
+                    }
+                }
+                break;
+            case BYTECODE:
+                if (resumeAt >= 0) {
+                    resumeOptimized(resumeAt);
+                } else {
+                    boolean prefixed = applyPrefix();
+                    GeneratedProgram generated = program.getGeneratedProgram(prefixed);
+                    if (generated != null) {
+                        pointer = generated.run(this, tape, pointer);
+                    } else {
+                        executeOptimized(program.getOptimizedProgram(), prefixed ? program.getPrefix().entry : 0);
+                    }
+                }
+                break;
+            default:
+                if (resumeAt >= 0) {
+                    resumeOptimized(resumeAt);
+                } else if (applyPrefix()) {
+                    executeOptimized(program.getOptimizedProgram(), program.getPrefix().entry);
+                } else {
+                    executeOptimized(program.getOptimizedProgram(), 0);
+                }
+                break;
+        }
+    }
+
+    // A prefix is only skipped when no limit could have stopped the run inside it: steps and tape
+    // size only grow, so checking them at the end of the prefix covers every back-edge before it.
+    // It is evaluated with 32-bit cells, so narrower tapes always run from the start.
+    private boolean applyPrefix() {
+        if (!prefixEnabled) {
+            return false;
+        }
+        CowPrefix prefix = program.getPrefix();
+        if (tape.cellBits() != 32 || prefix.steps > stepLimit || prefix.cells.length > maxTapeSize) {
+            return false;
+        }
+        prefix.restore(tape);
+        pointer = prefix.pointer;
+        register = prefix.register;
+        steps += prefix.steps;
+        if (checkpointInterval != Long.MAX_VALUE) {
+            nextCheckpoint = steps + checkpointInterval;
+        }
+        output.writeBytes(prefix.output);
+        return true;
+    }
+
+    private void resumeOptimized(int loopEnd) {
+        OptimizedProgram optimized = program.getOptimizedProgram();
+        int start = optimized.loopBodyStart(loopEnd);
+        if (start < 0) {
+            executeOpcodes(program.jumps[loopEnd] + 1);
+        } else {
+            executeOptimized(optimized, start);
+        }
+    }
+
+    void charge(int span, int pc) {
+        steps += span;
+        if (steps > stepLimit) {
+            throw new CowLimitExceededException("Step limit of " + stepLimit + " exceeded", steps, pc);
+        }
+        if (tape.size() > maxTapeSize) {
+            throw new CowLimitExceededException("Tape limit of " + maxTapeSize + " cells exceeded", steps, pc);
+        }
+        if (checkpointFile != null && (steps >= nextCheckpoint || checkpointRequested)) {
+            checkpoint(pc);
+        }
+    }
+
+    // An idiom stands for a whole loop, so a metered run charges the back-edges it replaces. The
+    // iterations are applied in batches that end at the back-edge tripping a limit or a checkpoint,
+    // which goes through charge with the tape as the literal loop would leave it there.
+    void runIdiom(LoopIdiom idiom, int pointer, int source) {
+        long iterations = idiom.iterations(tape.get(pointer), tape.cellBits());
+        if (iterations == 0) {
+            return;
+        }
+        int end = program.jumps[source];
+        int span = end - source + 1;
+        int saved = this.pointer;
+        this.pointer = pointer;
+        tape.ensure(pointer + idiom.maxOffset);
+        while (iterations > 1) {
+            long edges = Math.max(1, Math.min(iterations - 1, freeBackEdges(span)));
+            idiom.advance(tape, pointer, (int) edges);
+            iterations -= edges;
+            steps += (edges - 1) * span;
+            charge(span, end);
+        }
+        idiom.advance(tape, pointer, (int) iterations);
+        this.pointer = saved;
+    }
+
+    private long freeBackEdges(int span) {
+        if (checkpointRequested || tape.size() > maxTapeSize) {
+            return 0;
+        }
+        long free = (stepLimit - steps) / span;
+        if (checkpointFile != null && nextCheckpoint != Long.MAX_VALUE) {
+            free = Math.min(free, (nextCheckpoint - steps - 1) / span);
+        }
+        return free;
+    }
+
+    private void checkpoint(int pc) {
+        checkpointRequested = false;
+        nextCheckpoint = checkpointInterval == Long.MAX_VALUE ? Long.MAX_VALUE : steps + checkpointInterval;
+        output.flush();
+        CowCheckpoint checkpoint = new CowCheckpoint(program.getHash(), tape.cellBits(), pc, pointer, register,
+                input.getOffset(), steps, CowCheckpoint.capture(tape));
+        try {
+            checkpoint.write(checkpointFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (checkpointLock) {
+            checkpointsWritten++;
+            checkpointLock.notifyAll();
+        }
+    }
+
+    void setPointer(int pointer) {
+        this.pointer = pointer;
+    }
+
+    int executeSingle(byte opcode, int pointer) {
+        this.pointer = pointer;
+        executeOpcode(opcode);
+        return this.pointer;
+    }
+
+    // mOO dispatches on the target's pre-decoded opcode; the cell and pointer instructions run on
+    // the caller's pointer, the rest go through executeOpcode like any direct instruction.
+    int executeIndirect(int pointer) {
+        int targetIndex = tape.get(pointer);
+        byte[] code = program.code;
+        if (targetIndex < 0 || targetIndex >= code.length) {
+            return pointer;
+        }
+        switch (code[targetIndex]) {
+            case Opcode.INC:
+                tape.add(pointer, 1);
+                return pointer;
+            case Opcode.DEC:
+                tape.add(pointer, -1);
+                return pointer;
+            case Opcode.RIGHT:
+                tape.ensure(pointer + 1);
+                return pointer + 1;
+            case Opcode.LEFT:
+                return pointer > 0 ? pointer - 1 : 0;
+            case Opcode.ZERO:
+                tape.set(pointer, 0);
+                return pointer;
+            default:
+                return executeSingle(code[targetIndex], pointer);
+        }
+    }
+
+    private void executeOptimized(OptimizedProgram optimized, int start) {
+        byte[] ops = optimized.ops;
+        int[] args = optimized.args;
+        int[] offsets = optimized.offsets;
+        int[] floors = optimized.floors;
+        int[] sources = optimized.sources;
+        LoopIdiom[] idioms = optimized.idioms;
+        boolean metered = this.metered;
+        int pc = start;
+
+        while (pc < ops.length) {
+            switch (ops[pc]) {
+                case Opcode.ADD:
+                    tape.add(OptimizedProgram.cell(pointer, offsets[pc], floors[pc]), args[pc]);
+                    break;
+
+                case Opcode.MOVE:
+                    pointer = OptimizedProgram.cell(pointer, offsets[pc], floors[pc]);
+                    tape.ensure(pointer);
+                    break;
+
+                case Opcode.ENSURE:
+                    tape.ensure(OptimizedProgram.cell(pointer, offsets[pc], floors[pc]));
+                    break;
+
+                case Opcode.SHIFT:
+                    pointer += offsets[pc];
+                    break;
+
+                case Opcode.RANGE:
+                    if (!metered && tape.get(pointer) != 0 && pointer + offsets[pc] >= 0) {
+                        tape.ensure(pointer + floors[pc]);
+                        pc = args[pc] - 1;
+                    }
+                    break;
+
+                case Opcode.LOOP_START:
+                    if (tape.get(pointer) == 0) {
+                        pc = args[pc];
+                    }
+                    break;
+
+                case Opcode.LOOP_END:
+                    if (tape.get(pointer) != 0) {
+                        if (metered) {
+                            charge(optimized.loopSpan(pc), sources[pc]);
+                        }
+                        pc = args[pc];
+                    }
+                    break;
+
+                case Opcode.ZERO:
+                    if (metered && args[pc] >= 0) {
+                        int cell = OptimizedProgram.cell(pointer, offsets[pc], floors[pc]);
+                        runIdiom(idioms[args[pc]], cell, sources[pc]);
+                    } else {
+                        tape.set(OptimizedProgram.cell(pointer, offsets[pc], floors[pc]), 0);
+                    }
+                    break;
+
+                case Opcode.MULTIPLY: {
+                    LoopIdiom idiom = idioms[args[pc]];
+                    if (tape.get(pointer) == 0) {
+                        pc = idiom.exit;
+                    } else if (pointer + idiom.minOffset >= 0) {
+                        if (metered) {
+                            runIdiom(idiom, pointer, sources[pc]);
+                        } else {
+                            idiom.apply(tape, pointer);
+                        }
+                        pc = idiom.exit;
+                    }
+                    break;
+                }
+
+                case Opcode.EXEC:
+                    pointer = executeIndirect(pointer);
+                    break;
+
+                default:
+                    executeOpcode(ops[pc]);
+                    break;
+            }
+
+            pc++;
+        }
+    }
+
+    private void executeOpcodes(int start) {
+        byte[] code = program.code;
+        int[] jumps = program.jumps;
+        boolean metered = this.metered;
+        int pc = start;
+
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case Opcode.INC:
+                    tape.add(pointer, 1);
+                    break;
+
+                case Opcode.DEC:
+                    tape.add(pointer, -1);
+                    break;
+
+                case Opcode.RIGHT:
+                    pointer++;
+                    tape.ensure(pointer);
+                    break;
+
+                case Opcode.LEFT:
+                    if (pointer > 0) {
+                        pointer--;
+                    }
+                    break;
+
+                case Opcode.LOOP_START:
+                    if (tape.get(pointer) == 0) {
+                        pc = jumps[pc];
+                    }
+                    break;
+
+                case Opcode.LOOP_END:
+                    if (tape.get(pointer) != 0) {
+                        if (metered) {
+                            charge(pc - jumps[pc] + 1, pc);
+                        }
+                        pc = jumps[pc];
+                    }
+                    break;
+
+                case Opcode.EXEC:
+                    pointer = executeIndirect(pointer);
+                    break;
+
+                default:
+                    executeOpcode(code[pc]);
+                    break;
+            }
+
+            pc++;
+        }
+    }
+
+    private void executeProfiled(CowProfiler profiler, int start) {
+        byte[] code = program.code;
+        int[] jumps = program.jumps;
+        profiler.start(code, jumps);
+        long[] counts = profiler.counts;
+        long[] loopEntries = profiler.loopEntries;
+        long[] loopIterations = profiler.loopIterations;
+        int pc = start;
+
+        try {
+            while (pc < code.length) {
+                counts[pc]++;
+                switch (code[pc]) {
+                    case Opcode.LOOP_START:
+                        if (tape.get(pointer) == 0) {
+                            pc = jumps[pc];
+                        } else {
+                            loopEntries[pc]++;
+                            loopIterations[pc]++;
+                        }
+                        break;
+
+                    case Opcode.LOOP_END:
+                        if (tape.get(pointer) != 0) {
+                            if (metered) {
+                                charge(pc - jumps[pc] + 1, pc);
+                            }
+                            pc = jumps[pc];
+                            loopIterations[pc]++;
+                        }
+                        break;
+
+                    case Opcode.EXEC:
+                        pointer = executeIndirect(pointer);
+                        break;
+
+                    default:
+                        executeOpcode(code[pc]);
+                        break;
+                }
+
+                pc++;
+            }
+        } finally {
+            profiler.finish(tape.size());
+        }
+    }
+
+    private void executeOpcode(byte opcode) {
+        switch (opcode) {
+            case Opcode.INC:
+                tape.add(pointer, 1);
+                break;
+            case Opcode.DEC:
+                tape.add(pointer, -1);
+                break;
+            case Opcode.RIGHT:
+                pointer++;
+                tape.ensure(pointer);
+                break;
+            case Opcode.LEFT:
+                if (pointer > 0) {
+                    pointer--;
+                }
+                break;
+            case Opcode.PRINT_INT:
+                output.writeInt(tape.get(pointer));
+                break;
+            case Opcode.READ_INT:
+                output.beforeInput();
+                try {
+                    tape.set(pointer, input.readInt());
+                } catch (IOException e) {
+                    tape.set(pointer, 0);
+                }
+                break;
+            case Opcode.CHAR_IO:
+                if (tape.get(pointer) == 0) {
+                    output.beforeInput();
+                    try {
+                        tape.set(pointer, input.readByte());
+                    } catch (IOException e) {
+                        tape.set(pointer, 0);
+                    }
+                } else {
+                    output.writeChar(tape.get(pointer));
+                }
+                break;
+            case Opcode.ZERO:
+                tape.set(pointer, 0);
+                break;
+            case Opcode.REGISTER:
+                if (register == null) {
+                    register = tape.get(pointer);
+                } else {
+                    tape.set(pointer, register);
+                    register = null;
+                }
+                break;
+        }
+    }
+
+    private void executeReference(int start) {
+        List<String> instructions = program.instructions();
+        int pc = start;
+
+        while (pc < instructions.size()) {
+            String instr = instructions.get(pc);
+
+            switch (instr) {
+                case "MoO":
+                    ensureMemorySize();
+                    tape.add(pointer, 1);
+                    break;
+
+                case "MOo":
+                    ensureMemorySize();
+                    tape.add(pointer, -1);
+                    break;
+
+                case "moO":
+                    pointer++;
+                    ensureMemorySize();
+                    break;
+
+                case "mOo":
+                    if (pointer > 0) {
+                        pointer--;
+                    }
+                    break;
+
+                case "MOO":
+                    ensureMemorySize();
+                    if (tape.get(pointer) == 0) {
+                        int depth = 1;
+                        int searchPc = pc + 1;
+                        while (searchPc < instructions.size() && depth > 0) {
+                            if (instructions.get(searchPc).equals("MOO")) {
+                                depth++;
+                            } else if (instructions.get(searchPc).equals("moo")) {
+                                depth--;
+                            }
+                            searchPc++;
+                        }
+                        pc = searchPc - 1;
+                    }
+                    break;
+
+                case "moo":
+                    int end = pc;
+                    int depth = 1;
+                    int searchPc = pc - 1;
+                    while (searchPc >= 0 && depth > 0) {
+                        if (instructions.get(searchPc).equals("moo")) {
+                            depth++;
+                        } else if (instructions.get(searchPc).equals("MOO")) {
+                            depth--;
+                        }
+                        searchPc--;
+                    }
+                    if (metered && tape.get(pointer) != 0) {
+                        charge(end - searchPc, end);
+                    }
+                    pc = searchPc;
+                    break;
+
+                case "OOM":
+                    ensureMemorySize();
+                    output.writeInt(tape.get(pointer));
+                    break;
+
+                case "oom":
+                    ensureMemorySize();
+                    output.beforeInput();
+                    try {
+                        tape.set(pointer, input.readInt());
+                    } catch (IOException e) {
+                        tape.set(pointer, 0);
+                    }
+                    break;
+
+                case "mOO":
+                    ensureMemorySize();
+                    pointer = executeIndirect(pointer);
+                    break;
+
+                case "Moo":
+                    ensureMemorySize();
+                    if (tape.get(pointer) == 0) {
+                        output.beforeInput();
+                        try {
+                            tape.set(pointer, input.readByte());
+                        } catch (IOException e) {
+                            tape.set(pointer, 0);
+                        }
+                    } else {
+                        output.writeChar(tape.get(pointer));
+                    }
+                    break;
+
+                case "OOO":
+                    ensureMemorySize();
+                    tape.set(pointer, 0);
+                    break;
+
+                case "MMM":
+                    ensureMemorySize();
+                    if (register == null) {
+                        register = tape.get(pointer);
+                    } else {
+                        tape.set(pointer, register);
+                        register = null;
+                    }
+                    break;
+            }
+
+            pc++;
+        }
+    }
+
+    private void ensureMemorySize() {
+        tape.ensure(pointer);
+    }
+}
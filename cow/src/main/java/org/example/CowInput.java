@@ -0,0 +1,143 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+public class CowInput {
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+    private static final int MAX_TOKEN_LENGTH = 32;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private long bufferOffset;
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    public CowInput(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CowInput(InputStream in, int bufferSize) {
+        this.in = Objects.requireNonNull(in);
+        this.buffer = new byte[Math.max(MAX_TOKEN_LENGTH + 1, bufferSize)];
+    }
+
+    public int readByte() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    public int readInt() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return 0;
+            }
+            if (!isWhitespace(buffer[position])) {
+                break;
+            }
+            position++;
+        }
+
+        int length = tokenLength();
+        if (length > MAX_TOKEN_LENGTH) {
+            return 0;
+        }
+        int pos = position;
+        int end = position + length;
+        boolean negative = buffer[pos] == '-';
+        if (negative || buffer[pos] == '+') {
+            pos++;
+        }
+        if (pos == end) {
+            return 0;
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = buffer[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return 0;
+            }
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return 0;
+        }
+        position = end;
+        return (int) value;
+    }
+
+    public long getOffset() {
+        return bufferOffset + position;
+    }
+
+    public long skip(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            if (position == limit && !fill()) {
+                break;
+            }
+            int chunk = (int) Math.min(count - skipped, limit - position);
+            position += chunk;
+            skipped += chunk;
+        }
+        return skipped;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int tokenLength() throws IOException {
+        int length = 0;
+        while (true) {
+            while (position + length < limit) {
+                if (isWhitespace(buffer[position + length]) || length > MAX_TOKEN_LENGTH) {
+                    return length;
+                }
+                length++;
+            }
+            if (eof) {
+                return length;
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            bufferOffset += position;
+            limit -= position;
+            position = 0;
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        bufferOffset += limit;
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            eof = read < 0;
+            position = 0;
+            limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+}
@@ -1,249 +1,183 @@
 package org.example;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.*;
+import java.util.Objects;
 
 public class CowInterpreter {
-    private List<Integer> memory;
-    private int pointer;
-    private Integer register;
-    private List<String> instructions;
-    private Scanner scanner;
+    private final Tape tape;
+    private CompiledCowProgram program;
+    private volatile CowExecution execution;
+    private ExecutionMode mode;
+    private CowProfiler profiler;
+    private long stepLimit = Long.MAX_VALUE;
+    private int maxTapeSize = Integer.MAX_VALUE;
+    private boolean prefixEnabled = true;
+    private Path checkpointFile;
+    private long checkpointInterval = Long.MAX_VALUE;
+    private final CowInput input;
+    private final CowOutput output;
 
     public CowInterpreter() {
-        this.memory = new ArrayList<>();
-        this.memory.add(0);
-        this.pointer = 0;
-        this.register = null;
-        this.instructions = new ArrayList<>();
-        this.scanner = new Scanner(System.in);
+        this(new IntArrayTape());
+    }
+
+    public CowInterpreter(Tape tape) {
+        this(tape, new CowOutput(System.out));
+    }
+
+    public CowInterpreter(Tape tape, CowOutput output) {
+        this(tape, new CowInput(System.in), output);
+    }
+
+    public CowInterpreter(Tape tape, CowInput input, CowOutput output) {
+        this.tape = Objects.requireNonNull(tape);
+        this.input = Objects.requireNonNull(input);
+        this.output = Objects.requireNonNull(output);
+        this.program = CompiledCowProgram.EMPTY;
+        this.mode = ExecutionMode.OPTIMIZED;
     }
 
     public void loadProgram(String filename) throws IOException {
-        String content = new String(Files.readAllBytes(Paths.get(filename)));
-        parseInstructions(content);
-    }
-
-    private void parseInstructions(String content) {
-        instructions.clear();
-        int i = 0;
-        while (i < content.length()) {
-            if (i + 2 < content.length()) {
-                String candidate = content.substring(i, i + 3);
-                if (isValidInstruction(candidate)) {
-                    instructions.add(candidate);
-                    i += 3;
-                    continue;
-                }
+        Path path = Paths.get(filename);
+        if (CowProgramCache.isCache(path)) {
+            try {
+                loadProgram(CowProgramCache.load(path));
+                return;
+            } catch (CowProgramCache.StaleCacheException e) {
+                path = e.getSource();
             }
-            i++;
         }
+        loadProgram(CompiledCowProgram.compile(path));
     }
 
-    private boolean isValidInstruction(String s) {
-        return s.equals("MoO") || s.equals("MOo") || s.equals("moO") ||
-               s.equals("mOo") || s.equals("moo") || s.equals("MOO") ||
-               s.equals("OOM") || s.equals("oom") || s.equals("mOO") ||
-               s.equals("Moo") || s.equals("OOO") || s.equals("MMM");
+    public void loadProgram(ReadableByteChannel channel) throws IOException {
+        loadProgram(CompiledCowProgram.compile(channel));
     }
 
-    public void execute() {
-        memory.clear();
-        memory.add(0);
-        pointer = 0;
-        register = null;
-
-        int pc = 0;
-
-        while (pc < instructions.size()) {
-            String instr = instructions.get(pc);
-
-            switch (instr) {
-                case "MoO":
-                    ensureMemorySize();
-                    memory.set(pointer, memory.get(pointer) + 1);
-                    break;
-
-                case "MOo":
-                    ensureMemorySize();
-                    memory.set(pointer, memory.get(pointer) - 1);
-                    break;
-
-                case "moO":
-                    pointer++;
-                    ensureMemorySize();
-                    break;
-
-                case "mOo":
-                    if (pointer > 0) {
-                        pointer--;
-                    }
-                    break;
-
-                case "MOO":
-                    ensureMemorySize();
-                    if (memory.get(pointer) == 0) {
-                        int depth = 1;
-                        int searchPc = pc + 1;
-                        while (searchPc < instructions.size() && depth > 0) {
-                            if (instructions.get(searchPc).equals("MOO")) {
-                                depth++;
-                            } else if (instructions.get(searchPc).equals("moo")) {
-                                depth--;
-                            }
-                            searchPc++;
-                        }
-                        pc = searchPc - 1;
-                    }
-                    break;
-
-                case "moo":
-                    int depth = 1;
-                    int searchPc = pc - 1;
-                    while (searchPc >= 0 && depth > 0) {
-                        if (instructions.get(searchPc).equals("moo")) {
-                            depth++;
-                        } else if (instructions.get(searchPc).equals("MOO")) {
-                            depth--;
-                        }
-                        searchPc--;
-                    }
-                    pc = searchPc;
-                    break;
-
-                case "OOM":
-                    ensureMemorySize();
-                    System.out.print(memory.get(pointer));
-                    break;
-
-                case "oom":
-                    ensureMemorySize();
-                    try {
-                        if (scanner.hasNextInt()) {
-                            memory.set(pointer, scanner.nextInt());
-                        } else {
-                            memory.set(pointer, 0);
-                        }
-                    } catch (Exception e) {
-                        memory.set(pointer, 0);
-                    }
-                    break;
-
-                case "mOO":
-                    ensureMemorySize();
-                    int targetIndex = memory.get(pointer);
-                    if (targetIndex >= 0 && targetIndex < instructions.size()) {
-                        executeInstruction(instructions.get(targetIndex));
-                    }
-                    break;
-
-                case "Moo":
-                    ensureMemorySize();
-                    if (memory.get(pointer) == 0) {
-                        try {
-                            int input = System.in.read();
-                            memory.set(pointer, input);
-                        } catch (IOException e) {
-                            memory.set(pointer, 0);
-                        }
-                    } else {
-                        System.out.print((char) (int) memory.get(pointer));
-                    }
-                    break;
-
-                case "OOO":
-                    ensureMemorySize();
-                    memory.set(pointer, 0);
-                    break;
-
-                case "MMM":
-                    ensureMemorySize();
-                    if (register == null) {
-                        register = memory.get(pointer);
-                    } else {
-                        memory.set(pointer, register);
-                        register = null;
-                    }
-                    break;
-            }
+    public void loadProgram(CompiledCowProgram program) {
+        this.program = Objects.requireNonNull(program);
+        this.execution = null;
+    }
+
+    public CompiledCowProgram getProgram() {
+        return program;
+    }
+
+    public CowProfiler getProfiler() {
+        return profiler;
+    }
 
-            pc++;
+    public void setProfiler(CowProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return mode;
+    }
+
+    public void setExecutionMode(ExecutionMode mode) {
+        this.mode = Objects.requireNonNull(mode);
+    }
+
+    public void setStepLimit(long stepLimit) {
+        if (stepLimit < 0) {
+            throw new IllegalArgumentException("Step limit must not be negative: " + stepLimit);
         }
+        this.stepLimit = stepLimit;
     }
 
-    private void executeInstruction(String instr) {
-        switch (instr) {
-            case "MoO":
-                ensureMemorySize();
-                memory.set(pointer, memory.get(pointer) + 1);
-                break;
-            case "MOo":
-                ensureMemorySize();
-                memory.set(pointer, memory.get(pointer) - 1);
-                break;
-            case "moO":
-                pointer++;
-                ensureMemorySize();
-                break;
-            case "mOo":
-                if (pointer > 0) {
-                    pointer--;
-                }
-                break;
-            case "OOM":
-                ensureMemorySize();
-                System.out.print(memory.get(pointer));
-                break;
-            case "oom":
-                ensureMemorySize();
-                try {
-                    if (scanner.hasNextInt()) {
-                        memory.set(pointer, scanner.nextInt());
-                    } else {
-                        memory.set(pointer, 0);
-                    }
-                } catch (Exception e) {
-                    memory.set(pointer, 0);
-                }
-                break;
-            case "Moo":
-                ensureMemorySize();
-                if (memory.get(pointer) == 0) {
-                    try {
-                        int input = System.in.read();
-                        memory.set(pointer, input);
-                    } catch (IOException e) {
-                        memory.set(pointer, 0);
-                    }
-                } else {
-                    System.out.print((char) (int) memory.get(pointer));
-                }
-                break;
-            case "OOO":
-                ensureMemorySize();
-                memory.set(pointer, 0);
-                break;
-            case "MMM":
-                ensureMemorySize();
-                if (register == null) {
-                    register = memory.get(pointer);
-                } else {
-                    memory.set(pointer, register);
-                    register = null;
-                }
-                break;
+    public void setMaxTapeSize(int maxTapeSize) {
+        if (maxTapeSize < 1) {
+            throw new IllegalArgumentException("Tape size must be positive: " + maxTapeSize);
         }
+        this.maxTapeSize = maxTapeSize;
     }
 
-    private void ensureMemorySize() {
-        while (pointer >= memory.size()) {
-            memory.add(0);
+    public void setPrefixEnabled(boolean prefixEnabled) {
+        this.prefixEnabled = prefixEnabled;
+    }
+
+    public void setCheckpointing(Path file, long interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+    }
+
+    public void requestCheckpoint() {
+        CowExecution current = execution;
+        if (current != null) {
+            current.requestCheckpoint();
         }
     }
 
+    public boolean awaitCheckpoint(long millis) throws InterruptedException {
+        CowExecution current = execution;
+        return current != null && current.awaitCheckpoint(millis);
+    }
+
+    public long getSteps() {
+        return execution == null ? 0 : execution.getSteps();
+    }
+
+    public int getInstructionCount() {
+        return program.getInstructionCount();
+    }
+
+    public OptimizedProgram getOptimizedProgram() {
+        return program.getOptimizedProgram();
+    }
+
+    public void execute() {
+        configure().run();
+    }
+
+    public void resume(CowCheckpoint checkpoint) throws IOException {
+        configure().resume(checkpoint);
+    }
+
+    private CowExecution configure() {
+        CowExecution current = execution;
+        if (current == null) {
+            current = program.newExecution(tape, input, output);
+            execution = current;
+        }
+        current.setExecutionMode(mode);
+        current.setProfiler(profiler);
+        current.setStepLimit(stepLimit);
+        current.setMaxTapeSize(maxTapeSize);
+        current.setPrefixEnabled(prefixEnabled);
+        if (checkpointFile != null) {
+            current.setCheckpointing(checkpointFile, checkpointInterval);
+        }
+        return current;
+    }
+
+    public void prepare() {
+        program.prepare(mode, prefixEnabled);
+    }
+
+    public Tape getTape() {
+        return tape;
+    }
+
+    public CowOutput getOutput() {
+        return output;
+    }
+
     public void close() {
-        scanner.close();
+        try {
+            output.flush();
+        } finally {
+            try {
+                input.close();
+            } catch (IOException ignored) {
+            }
+            tape.close();
+        }
     }
 }
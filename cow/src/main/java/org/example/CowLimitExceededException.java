@@ -0,0 +1,20 @@
+package org.example;
+
+public class CowLimitExceededException extends RuntimeException {
+    private final long steps;
+    private final int pc;
+
+    public CowLimitExceededException(String message, long steps, int pc) {
+        super(message + " at instruction " + pc + " after " + steps + " steps");
+        this.steps = steps;
+        this.pc = pc;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public int getPc() {
+        return pc;
+    }
+}
@@ -0,0 +1,327 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class CowOptimizer {
+    // Each pre-sized inner loop recurses once, so loops nested deeper than this run without RANGE.
+    private static final int MAX_RANGE_DEPTH = 64;
+
+    private byte[] ops;
+    private int[] args;
+    private int[] offsets;
+    private int[] floors;
+    private int[] sources;
+    private int size;
+    private int segmentStart = -1;
+    private int offset;
+    private int low;
+    private int high;
+    private int reach;
+    private int lastMove;
+    private boolean ranged;
+    private boolean unchecked;
+    private int base;
+    private int presized;
+    private final List<LoopIdiom> idioms = new ArrayList<>();
+
+    private CowOptimizer(int capacity) {
+        this.ops = new byte[Math.max(16, capacity)];
+        this.args = new int[ops.length];
+        this.offsets = new int[ops.length];
+        this.floors = new int[ops.length];
+        this.sources = new int[ops.length];
+    }
+
+    public static OptimizedProgram optimize(byte[] code) {
+        CowOptimizer optimizer = new CowOptimizer(code.length / 4);
+        optimizer.emitRange(code, 0, code.length);
+        optimizer.flush();
+        return new OptimizedProgram(
+                Arrays.copyOf(optimizer.ops, optimizer.size),
+                Arrays.copyOf(optimizer.args, optimizer.size),
+                Arrays.copyOf(optimizer.offsets, optimizer.size),
+                Arrays.copyOf(optimizer.floors, optimizer.size),
+                Arrays.copyOf(optimizer.sources, optimizer.size),
+                optimizer.idioms.toArray(new LoopIdiom[0]));
+    }
+
+    private void emitRange(byte[] code, int from, int to) {
+        int[] loopStack = new int[16];
+        int depth = 0;
+        int pc = from;
+
+        while (pc < to) {
+            byte opcode = code[pc];
+            switch (opcode) {
+                case Opcode.INC:
+                    write(Opcode.ADD, 1, pc);
+                    break;
+
+                case Opcode.DEC:
+                    write(Opcode.ADD, -1, pc);
+                    break;
+
+                case Opcode.RIGHT:
+                    offset++;
+                    high = Math.max(high, offset);
+                    reach = Math.max(reach, offset - low);
+                    lastMove = pc;
+                    break;
+
+                case Opcode.LEFT:
+                    offset--;
+                    low = Math.min(low, offset);
+                    lastMove = pc;
+                    break;
+
+                case Opcode.ZERO:
+                    write(Opcode.ZERO, -1, pc);
+                    break;
+
+                case Opcode.LOOP_START: {
+                    LoopIdiom idiom = LoopIdiom.analyze(code, pc);
+                    if (idiom != null && idiom.isClear()) {
+                        // A metered run can stop inside a clear loop, so it gets a segment of its
+                        // own and the tape is not grown for the moves after it yet. Unchecked
+                        // copies never run metered.
+                        if (!unchecked) {
+                            flush();
+                        }
+                        write(Opcode.ZERO, addIdiom(idiom), pc);
+                        if (!unchecked) {
+                            flush();
+                        }
+                        pc = loopEnd(code, pc);
+                        break;
+                    }
+                    flush();
+                    if (idiom != null && (!idiom.needsGuard() || unchecked)) {
+                        idiom.exit = size;
+                        emit(Opcode.MULTIPLY, addIdiom(idiom), pc);
+                        pc = loopEnd(code, pc);
+                        break;
+                    }
+                    int[] range = idiom == null && (!ranged || unchecked) ? excursion(code, pc) : null;
+                    if (range != null && unchecked && base + range[1] > presized) {
+                        pc = emitPresized(code, pc, range);
+                        break;
+                    }
+                    if (range != null && !ranged && (range[0] < 0 || range[1] > 0)) {
+                        pc = emitRanged(code, pc, range);
+                        break;
+                    }
+                    if (depth == loopStack.length) {
+                        loopStack = Arrays.copyOf(loopStack, depth * 2);
+                    }
+                    loopStack[depth++] = size;
+                    if (idiom != null) {
+                        emit(Opcode.MULTIPLY, addIdiom(idiom), pc);
+                    } else {
+                        emit(Opcode.LOOP_START, -1, pc);
+                    }
+                    break;
+                }
+
+                case Opcode.LOOP_END: {
+                    flush();
+                    int loopStart = loopStack[--depth];
+                    if (ops[loopStart] == Opcode.MULTIPLY) {
+                        idioms.get(args[loopStart]).exit = size;
+                    } else {
+                        args[loopStart] = size;
+                    }
+                    emit(Opcode.LOOP_END, loopStart, pc);
+                    break;
+                }
+
+                default:
+                    flush();
+                    emit(opcode, 0, pc);
+                    break;
+            }
+            pc++;
+        }
+    }
+
+    // The loop is emitted twice after a RANGE guard: as is, and with every cell the body reaches
+    // outside inner loops pre-sized and no clamping, for entries where the guard holds.
+    private int emitRanged(byte[] code, int start, int[] range) {
+        int end = matchingEnd(code, start);
+        int guard = size;
+        emit(Opcode.RANGE, 0, start);
+        offsets[guard] = range[0];
+        floors[guard] = range[1];
+        ranged = true;
+        emitRange(code, start, end + 1);
+        args[guard] = size;
+        unchecked = true;
+        base = 0;
+        presized = range[1];
+        emitRange(code, start, end + 1);
+        unchecked = false;
+        ranged = false;
+        return end;
+    }
+
+    // Inside an unchecked copy the pointer cannot clamp, so an inner loop reaching past the cells
+    // already pre-sized only needs the tape grown on entry; its guard has no checked copy.
+    private int emitPresized(byte[] code, int start, int[] range) {
+        int end = matchingEnd(code, start);
+        int guard = size;
+        emit(Opcode.RANGE, guard + 1, start);
+        offsets[guard] = range[0];
+        floors[guard] = range[1];
+        int outer = presized;
+        presized = base + range[1];
+        emitRange(code, start, end + 1);
+        presized = outer;
+        return end;
+    }
+
+    // Lowest offset anywhere in the body and highest offset outside inner loops, relative to the
+    // pointer at loop entry, or null when an iteration can leave the pointer somewhere else or the
+    // loops nest too deeply.
+    private static int[] excursion(byte[] code, int start) {
+        int offset = 0;
+        int lowest = 0;
+        int highest = 0;
+        int[] entries = new int[8];
+        int depth = 0;
+        for (int pc = start + 1; ; pc++) {
+            switch (code[pc]) {
+                case Opcode.RIGHT:
+                    offset++;
+                    if (depth == 0) {
+                        highest = Math.max(highest, offset);
+                    }
+                    break;
+                case Opcode.LEFT:
+                    offset--;
+                    lowest = Math.min(lowest, offset);
+                    break;
+                case Opcode.EXEC:
+                    return null;
+                case Opcode.LOOP_START:
+                    if (depth == MAX_RANGE_DEPTH) {
+                        return null;
+                    }
+                    if (depth == entries.length) {
+                        entries = Arrays.copyOf(entries, depth * 2);
+                    }
+                    entries[depth++] = offset;
+                    break;
+                case Opcode.LOOP_END:
+                    if (depth == 0) {
+                        return offset == 0 ? new int[]{lowest, highest} : null;
+                    }
+                    if (entries[--depth] != offset) {
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Cell touched at the current position is max(p + offset, offset - low), p being the pointer
+    // when the segment started: a left move past the lowest point so far is where clamping can happen.
+    private void write(byte op, int arg, int source) {
+        if (segmentStart < 0) {
+            segmentStart = size;
+        }
+        int floor = unchecked ? offset : offset - low;
+        if (op == Opcode.ADD && size > segmentStart && ops[size - 1] == Opcode.ADD
+                && offsets[size - 1] == offset && floors[size - 1] == floor) {
+            args[size - 1] += arg;
+            if (args[size - 1] == 0) {
+                size--;
+            }
+            return;
+        }
+        emit(op, arg, source);
+        offsets[size - 1] = offset;
+        floors[size - 1] = floor;
+    }
+
+    private void flush() {
+        if (unchecked && base + high <= presized) {
+            if (offset != 0) {
+                emit(Opcode.SHIFT, 0, lastMove);
+                offsets[size - 1] = offset;
+                floors[size - 1] = offset;
+            }
+        } else {
+            int end = offset - low;
+            boolean writes = segmentStart >= 0 && size > segmentStart;
+            if ((high > 0 || reach > 0) && (writes || high != offset || reach != end)) {
+                int first = writes ? segmentStart : size;
+                emit(Opcode.ENSURE, 0, 0);
+                int moved = size - 1 - first;
+                System.arraycopy(ops, first, ops, first + 1, moved);
+                System.arraycopy(args, first, args, first + 1, moved);
+                System.arraycopy(offsets, first, offsets, first + 1, moved);
+                System.arraycopy(floors, first, floors, first + 1, moved);
+                System.arraycopy(sources, first, sources, first + 1, moved);
+                ops[first] = Opcode.ENSURE;
+                args[first] = 0;
+                offsets[first] = high;
+                floors[first] = reach;
+                sources[first] = writes ? sources[first + 1] : lastMove;
+            }
+            if (offset != 0 || low != 0) {
+                emit(Opcode.MOVE, 0, lastMove);
+                offsets[size - 1] = offset;
+                floors[size - 1] = end;
+            }
+        }
+        base += offset;
+        segmentStart = -1;
+        offset = 0;
+        low = 0;
+        high = 0;
+        reach = 0;
+    }
+
+    private static int matchingEnd(byte[] code, int start) {
+        int depth = 0;
+        for (int pc = start; ; pc++) {
+            if (code[pc] == Opcode.LOOP_START) {
+                depth++;
+            } else if (code[pc] == Opcode.LOOP_END && --depth == 0) {
+                return pc;
+            }
+        }
+    }
+
+    private static int loopEnd(byte[] code, int start) {
+        int pc = start + 1;
+        while (code[pc] != Opcode.LOOP_END) {
+            pc++;
+        }
+        return pc;
+    }
+
+    private int addIdiom(LoopIdiom idiom) {
+        idioms.add(idiom);
+        return idioms.size() - 1;
+    }
+
+    private void emit(byte op, int arg, int source) {
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, size * 2);
+            args = Arrays.copyOf(args, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+            floors = Arrays.copyOf(floors, size * 2);
+            sources = Arrays.copyOf(sources, size * 2);
+        }
+        ops[size] = op;
+        args[size] = arg;
+        offsets[size] = 0;
+        floors[size] = 0;
+        sources[size] = source;
+        size++;
+    }
+}
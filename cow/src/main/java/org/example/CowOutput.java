@@ -0,0 +1,174 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+public class CowOutput {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MAX_ENCODED_LENGTH = 11;
+    private static final byte[] MIN_VALUE_DIGITS = "-2147483648".getBytes(StandardCharsets.US_ASCII);
+    private static final String ASCII_PROBE = "\n -0123456789AZaz";
+
+    private final OutputStream out;
+    private final Appendable appendable;
+    private final FlushPolicy policy;
+    private final Charset charset;
+    private final boolean utf8;
+    private final byte[] buffer;
+    private int count;
+
+    public CowOutput(OutputStream out) {
+        this(out, FlushPolicy.BUFFERED);
+    }
+
+    public CowOutput(OutputStream out, FlushPolicy policy) {
+        this(out, policy, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CowOutput(OutputStream out, FlushPolicy policy, int bufferSize) {
+        this(out, policy, bufferSize, Charset.defaultCharset());
+    }
+
+    public CowOutput(OutputStream out, FlushPolicy policy, Charset charset) {
+        this(out, policy, DEFAULT_BUFFER_SIZE, charset);
+    }
+
+    public CowOutput(OutputStream out, FlushPolicy policy, int bufferSize, Charset charset) {
+        this(Objects.requireNonNull(out), null, policy, bufferSize, charset);
+    }
+
+    // The buffer never leaves the process here, so it is kept in UTF-8 whatever the platform charset.
+    public static CowOutput toAppendable(Appendable appendable) {
+        return new CowOutput(null, Objects.requireNonNull(appendable), FlushPolicy.BUFFERED, DEFAULT_BUFFER_SIZE,
+                StandardCharsets.UTF_8);
+    }
+
+    // Digits and ASCII characters are written as single bytes, so only charsets that encode ASCII
+    // that way are accepted.
+    private CowOutput(OutputStream out, Appendable appendable, FlushPolicy policy, int bufferSize, Charset charset) {
+        if (!Arrays.equals(ASCII_PROBE.getBytes(charset), ASCII_PROBE.getBytes(StandardCharsets.US_ASCII))) {
+            throw new IllegalArgumentException("Output charset is not ASCII-compatible: " + charset);
+        }
+        this.out = out;
+        this.appendable = appendable;
+        this.policy = Objects.requireNonNull(policy);
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.buffer = new byte[Math.max(MAX_ENCODED_LENGTH, bufferSize)];
+    }
+
+    public FlushPolicy getPolicy() {
+        return policy;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public void writeInt(int value) {
+        reserve(MAX_ENCODED_LENGTH);
+        if (value == Integer.MIN_VALUE) {
+            System.arraycopy(MIN_VALUE_DIGITS, 0, buffer, count, MIN_VALUE_DIGITS.length);
+            count += MIN_VALUE_DIGITS.length;
+            return;
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int end = count + digits(value);
+        int pos = end;
+        do {
+            buffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count = end;
+    }
+
+    public void writeChar(int value) {
+        char c = (char) value;
+        reserve(3);
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+            if (c == '\n' && policy == FlushPolicy.LINE) {
+                flush();
+            }
+        } else if (!utf8) {
+            byte[] encoded = String.valueOf(c).getBytes(charset);
+            reserve(encoded.length);
+            System.arraycopy(encoded, 0, buffer, count, encoded.length);
+            count += encoded.length;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    // The bytes are UTF-8, as the load-time prefix records them.
+    void writeBytes(byte[] bytes) {
+        if (!utf8) {
+            bytes = new String(bytes, StandardCharsets.UTF_8).getBytes(charset);
+        }
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (count == buffer.length) {
+                flush();
+            }
+            int length = Math.min(bytes.length - offset, buffer.length - count);
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+            offset += length;
+        }
+        if (policy == FlushPolicy.LINE && bytes.length > 0) {
+            flush();
+        }
+    }
+
+    public void beforeInput() {
+        if (policy == FlushPolicy.LINE) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        try {
+            if (out != null) {
+                if (count > 0) {
+                    out.write(buffer, 0, count);
+                }
+                out.flush();
+            } else if (count > 0) {
+                appendable.append(new String(buffer, 0, count, charset));
+            }
+            count = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reserve(int length) {
+        if (count + length > buffer.length) {
+            flush();
+        }
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,197 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+final class CowPrefix {
+    static final long STEP_BUDGET = 1L << 18;
+    // The snapshot is restored into every run, so a prefix that grows the tape past this stops early.
+    static final int MAX_CELLS = 1 << 16;
+
+    final int entry;
+    final int pointer;
+    final Integer register;
+    final long steps;
+    final int[] cells;
+    final byte[] output;
+
+    private CowPrefix(int entry, int pointer, Integer register, long steps, int[] cells, byte[] output) {
+        this.entry = entry;
+        this.pointer = pointer;
+        this.register = register;
+        this.steps = steps;
+        this.cells = cells;
+        this.output = output;
+    }
+
+    // Runs the optimized program until it is about to read input or the budget runs out, then keeps
+    // the state from the last top-level operation, where every engine built from the IR can start.
+    static CowPrefix evaluate(CompiledCowProgram program, OptimizedProgram optimized, long budget) {
+        boolean[] topLevel = topLevel(optimized);
+        Evaluator evaluator = new Evaluator(program, optimized);
+        evaluator.run(topLevel, budget);
+        if (evaluator.executed != evaluator.safeExecuted) {
+            long executed = evaluator.safeExecuted;
+            evaluator = new Evaluator(program, optimized);
+            evaluator.run(topLevel, executed);
+        }
+        return evaluator.toPrefix();
+    }
+
+    // The unchecked copy of a RANGE loop follows its checked copy at depth 0, but metered runs and
+    // the bytecode presize check only enter it through the guard, so it is never a resume point.
+    private static boolean[] topLevel(OptimizedProgram optimized) {
+        boolean[] topLevel = new boolean[optimized.length() + 1];
+        int depth = 0;
+        int unchecked = -1;
+        for (int i = 0; i < optimized.length(); i++) {
+            byte op = optimized.ops[i];
+            topLevel[i] = depth == 0 && i != unchecked;
+            if (op == Opcode.RANGE && depth == 0) {
+                unchecked = optimized.args[i];
+            }
+            if (op == Opcode.LOOP_END) {
+                depth--;
+            } else if (op == Opcode.LOOP_START || (op == Opcode.MULTIPLY && optimized.idioms[optimized.args[i]].exit > i)) {
+                depth++;
+            }
+        }
+        topLevel[optimized.length()] = true;
+        return topLevel;
+    }
+
+    void restore(Tape tape) {
+        tape.ensure(cells.length - 1);
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != 0) {
+                tape.set(i, cells[i]);
+            }
+        }
+    }
+
+    private static final class Evaluator {
+        private final OptimizedProgram program;
+        private final byte[] code;
+        private final int[] jumps;
+        private final IntArrayTape tape = new IntArrayTape();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final CowOutput output = new CowOutput(bytes, FlushPolicy.BUFFERED, StandardCharsets.UTF_8);
+        private final CowExecution execution;
+        private int pc;
+        private int pointer;
+        private long executed;
+        private long steps;
+        private long safeExecuted;
+
+        Evaluator(CompiledCowProgram compiled, OptimizedProgram program) {
+            this.program = program;
+            this.code = compiled.code;
+            this.jumps = compiled.jumps;
+            this.execution = compiled.newExecution(tape, new CowInput(new ByteArrayInputStream(new byte[0])), output);
+        }
+
+        void run(boolean[] topLevel, long limit) {
+            while (tape.size() <= MAX_CELLS) {
+                if (topLevel[pc]) {
+                    safeExecuted = executed;
+                }
+                if (pc == program.ops.length || executed == limit || readsInput()) {
+                    return;
+                }
+                step();
+                executed++;
+            }
+        }
+
+        private boolean readsInput() {
+            byte op = program.ops[pc];
+            if (op == Opcode.EXEC) {
+                int target = tape.get(pointer);
+                if (target < 0 || target >= code.length) {
+                    return false;
+                }
+                op = code[target];
+            }
+            return op == Opcode.READ_INT || (op == Opcode.CHAR_IO && tape.get(pointer) == 0);
+        }
+
+        private void step() {
+            int offset = program.offsets[pc];
+            int floor = program.floors[pc];
+            switch (program.ops[pc]) {
+                case Opcode.ADD:
+                    tape.add(OptimizedProgram.cell(pointer, offset, floor), program.args[pc]);
+                    break;
+                case Opcode.MOVE:
+                    pointer = OptimizedProgram.cell(pointer, offset, floor);
+                    tape.ensure(pointer);
+                    break;
+                case Opcode.ENSURE:
+                    tape.ensure(OptimizedProgram.cell(pointer, offset, floor));
+                    break;
+                case Opcode.SHIFT:
+                    pointer += offset;
+                    break;
+                case Opcode.RANGE:
+                    if (tape.get(pointer) != 0 && pointer + offset >= 0) {
+                        tape.ensure(pointer + floor);
+                        pc = program.args[pc] - 1;
+                    }
+                    break;
+                case Opcode.ZERO: {
+                    int cell = OptimizedProgram.cell(pointer, offset, floor);
+                    if (program.args[pc] >= 0) {
+                        charge(program.idioms[program.args[pc]], cell);
+                    }
+                    tape.set(cell, 0);
+                    break;
+                }
+                case Opcode.LOOP_START:
+                    if (tape.get(pointer) == 0) {
+                        pc = program.args[pc];
+                    }
+                    break;
+                case Opcode.LOOP_END:
+                    if (tape.get(pointer) != 0) {
+                        steps += program.loopSpan(pc);
+                        pc = program.args[pc];
+                    }
+                    break;
+                case Opcode.MULTIPLY: {
+                    LoopIdiom idiom = program.idioms[program.args[pc]];
+                    if (tape.get(pointer) == 0) {
+                        pc = idiom.exit;
+                    } else if (pointer + idiom.minOffset >= 0) {
+                        charge(idiom, pointer);
+                        idiom.apply(tape, pointer);
+                        pc = idiom.exit;
+                    }
+                    break;
+                }
+                case Opcode.EXEC:
+                    pointer = execution.executeIndirect(pointer);
+                    break;
+                default:
+                    pointer = execution.executeSingle(program.ops[pc], pointer);
+                    break;
+            }
+            pc++;
+        }
+
+        // Idioms count the back-edges of the loops they replace, as metered runs charge them.
+        private void charge(LoopIdiom idiom, int cell) {
+            long iterations = idiom.iterations(tape.get(cell), 32);
+            if (iterations > 1) {
+                int source = program.sources[pc];
+                steps += (iterations - 1) * (jumps[source] - source + 1);
+            }
+        }
+
+        CowPrefix toPrefix() {
+            output.flush();
+            return new CowPrefix(pc, pointer, execution.getRegister(), steps,
+                    CowCheckpoint.capture(tape), bytes.toByteArray());
+        }
+    }
+}
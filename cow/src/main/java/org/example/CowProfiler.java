@@ -0,0 +1,144 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class CowProfiler {
+    private static final int TOP_ENTRIES = 20;
+
+    private byte[] code = new byte[0];
+    private int[] jumps = new int[0];
+    long[] counts = new long[0];
+    long[] loopEntries = new long[0];
+    long[] loopIterations = new long[0];
+    private int tapeHighWater;
+
+    void start(byte[] code, int[] jumps) {
+        if (this.code != code) {
+            this.code = code;
+            this.jumps = jumps;
+            this.counts = new long[code.length];
+            this.loopEntries = new long[code.length];
+            this.loopIterations = new long[code.length];
+        }
+    }
+
+    void finish(int tapeSize) {
+        this.tapeHighWater = Math.max(tapeHighWater, tapeSize);
+    }
+
+    // Every profiled step counts its instruction, so the total is current even while a run is going.
+    public long getSteps() {
+        long steps = 0;
+        for (long count : counts) {
+            steps += count;
+        }
+        return steps;
+    }
+
+    public int getTapeHighWater() {
+        return tapeHighWater;
+    }
+
+    public long getCount(int pc) {
+        return counts[pc];
+    }
+
+    public long getLoopEntries(int loopStart) {
+        return loopEntries[loopStart];
+    }
+
+    public long getLoopIterations(int loopStart) {
+        return loopIterations[loopStart];
+    }
+
+    public void writeReport(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("Total steps: " + getSteps());
+        out.println("Tape high-water mark: " + tapeHighWater + " cells");
+        out.println("Instructions: " + code.length);
+        out.println();
+
+        out.println("Hottest loops (MOO index, moo index, entries, iterations, steps inside):");
+        List<Integer> loops = new ArrayList<>();
+        for (int pc = 0; pc < code.length; pc++) {
+            if (code[pc] == Opcode.LOOP_START && loopEntries[pc] > 0) {
+                loops.add(pc);
+            }
+        }
+        long[] loopSteps = new long[code.length];
+        for (int start : loops) {
+            for (int pc = start; pc <= jumps[start]; pc++) {
+                loopSteps[start] += counts[pc];
+            }
+        }
+        loops.sort(Comparator.comparingLong((Integer pc) -> loopSteps[pc]).reversed());
+        for (int i = 0; i < Math.min(TOP_ENTRIES, loops.size()); i++) {
+            int start = loops.get(i);
+            out.printf("  %8d %8d %14d %14d %16d%n", start, jumps[start],
+                    loopEntries[start], loopIterations[start], loopSteps[start]);
+        }
+        out.println();
+
+        out.println("Hottest instructions (index, instruction, count):");
+        List<Integer> hot = new ArrayList<>();
+        for (int pc = 0; pc < code.length; pc++) {
+            if (counts[pc] > 0) {
+                hot.add(pc);
+            }
+        }
+        hot.sort(Comparator.comparingLong((Integer pc) -> counts[pc]).reversed());
+        for (int i = 0; i < Math.min(TOP_ENTRIES, hot.size()); i++) {
+            int pc = hot.get(i);
+            out.printf("  %8d %s %16d%n", pc, Opcode.mnemonic(code[pc]), counts[pc]);
+        }
+        out.flush();
+    }
+
+    public void writeCollapsedStacks(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        StringBuilder stack = new StringBuilder("program");
+        int[] frameLengths = new int[16];
+        int depth = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            byte opcode = code[pc];
+            if (counts[pc] > 0) {
+                out.print(stack);
+                out.print(';');
+                out.print(Opcode.mnemonic(opcode));
+                out.print('@');
+                out.print(pc);
+                out.print(' ');
+                out.println(counts[pc]);
+            }
+            if (opcode == Opcode.LOOP_START) {
+                if (depth == frameLengths.length) {
+                    frameLengths = Arrays.copyOf(frameLengths, depth * 2);
+                }
+                frameLengths[depth++] = stack.length();
+                stack.append(";loop@").append(pc);
+            } else if (opcode == Opcode.LOOP_END && depth > 0) {
+                stack.setLength(frameLengths[--depth]);
+            }
+        }
+        out.flush();
+    }
+
+    public void writeFiles(Path report) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            writeReport(writer);
+        }
+        Path folded = report.resolveSibling(report.getFileName() + ".folded");
+        try (Writer writer = Files.newBufferedWriter(folded, StandardCharsets.UTF_8)) {
+            writeCollapsedStacks(writer);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public final class CowProgramCache {
+    public static final String EXTENSION = ".cowc";
+    public static final int FORMAT_VERSION = 5;
+
+    private static final int MAGIC = 0x434F5743;
+
+    public static final class StaleCacheException extends IOException {
+        private final Path source;
+
+        StaleCacheException(Path source) {
+            super("Cached program is older than its source " + source);
+            this.source = source;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+    }
+
+    private CowProgramCache() {
+    }
+
+    public static Path defaultTarget(Path source) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return source.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+    }
+
+    public static CompiledCowProgram compile(Path source, Path target) throws IOException {
+        byte[] bytes = Files.readAllBytes(source);
+        CompiledCowProgram program = CompiledCowProgram.compile(bytes);
+        write(program, source.toAbsolutePath(), bytes.length, Files.getLastModifiedTime(source).toMillis(),
+                hash(bytes), target);
+        return program;
+    }
+
+    private static void write(CompiledCowProgram program, Path source, long sourceSize, long sourceModified,
+                              long sourceHash, Path target) throws IOException {
+        OptimizedProgram optimized = program.getOptimizedProgram();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            byte[] path = source.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(path.length);
+            out.write(path);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceModified);
+            out.writeLong(sourceHash);
+
+            out.writeInt(program.code.length);
+            out.write(program.code);
+            int loops = 0;
+            for (byte opcode : program.code) {
+                if (opcode == Opcode.LOOP_START) {
+                    loops++;
+                }
+            }
+            out.writeInt(loops);
+            for (int pc = 0; pc < program.code.length; pc++) {
+                if (program.code[pc] == Opcode.LOOP_START) {
+                    out.writeInt(pc);
+                    out.writeInt(program.jumps[pc]);
+                }
+            }
+
+            out.writeInt(optimized.ops.length);
+            out.write(optimized.ops);
+            writeInts(out, optimized.args);
+            writeInts(out, optimized.offsets);
+            writeInts(out, optimized.floors);
+            writeInts(out, optimized.sources);
+            out.writeInt(optimized.idioms.length);
+            for (LoopIdiom idiom : optimized.idioms) {
+                out.writeInt(idiom.offsets.length);
+                writeInts(out, idiom.offsets);
+                writeInts(out, idiom.factors);
+                out.writeInt(idiom.counterInverse);
+                out.writeInt(idiom.minOffset);
+                out.writeInt(idiom.maxOffset);
+                out.writeInt(idiom.exit);
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    // Only the extension decides: a source file may start with the signature bytes by chance, and
+    // a .cowc file without it is reported by load instead of being parsed as COW source.
+    public static boolean isCache(Path file) {
+        Path name = file.getFileName();
+        return name != null && name.toString().endsWith(EXTENSION);
+    }
+
+    public static CompiledCowProgram load(Path cache) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a compiled COW program: " + cache);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Compiled program " + cache + " has format version " + version
+                        + ", expected " + FORMAT_VERSION);
+            }
+            byte[] path = new byte[length(buffer)];
+            buffer.get(path);
+            checkSource(Paths.get(new String(path, StandardCharsets.UTF_8)),
+                    buffer.getLong(), buffer.getLong(), buffer.getLong());
+
+            byte[] code = new byte[length(buffer)];
+            buffer.get(code);
+            int[] jumps = new int[code.length];
+            int[] loops = readInts(buffer, 2 * length(buffer));
+            for (int i = 0; i < loops.length; i += 2) {
+                int start = loops[i];
+                int end = loops[i + 1];
+                if (start < 0 || start >= code.length || end < 0 || end >= code.length) {
+                    throw new IOException("Corrupt compiled program: " + cache);
+                }
+                jumps[start] = end;
+                jumps[end] = start;
+            }
+
+            byte[] ops = new byte[length(buffer)];
+            buffer.get(ops);
+            int[] args = readInts(buffer, ops.length);
+            int[] offsets = readInts(buffer, ops.length);
+            int[] floors = readInts(buffer, ops.length);
+            int[] sources = readInts(buffer, ops.length);
+            LoopIdiom[] idioms = new LoopIdiom[length(buffer)];
+            for (int i = 0; i < idioms.length; i++) {
+                int targets = length(buffer);
+                int[] targetOffsets = readInts(buffer, targets);
+                int[] factors = readInts(buffer, targets);
+                idioms[i] = new LoopIdiom(targetOffsets, factors, buffer.getInt(), buffer.getInt(), buffer.getInt());
+                idioms[i].exit = buffer.getInt();
+            }
+
+            OptimizedProgram optimized = new OptimizedProgram(ops, args, offsets, floors, sources, idioms);
+            if (!isValid(code, jumps) || !isValid(optimized, code)) {
+                throw new IOException("Corrupt compiled program: " + cache);
+            }
+            return new CompiledCowProgram(code, jumps, optimized);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Truncated compiled program: " + cache, e);
+        }
+    }
+
+    private static void checkSource(Path source, long size, long modified, long hash) throws IOException {
+        if (!Files.isRegularFile(source)) {
+            return;
+        }
+        if (Files.size(source) == size && Files.getLastModifiedTime(source).toMillis() == modified) {
+            return;
+        }
+        if (hash(Files.readAllBytes(source)) != hash) {
+            throw new StaleCacheException(source);
+        }
+    }
+
+    private static int length(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupt length " + length + " in compiled program");
+        }
+        return length;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static boolean isValid(byte[] code, int[] jumps) {
+        for (int pc = 0; pc < code.length; pc++) {
+            if (code[pc] < 0 || code[pc] >= Opcode.COUNT) {
+                return false;
+            }
+            if (code[pc] == Opcode.LOOP_START || code[pc] == Opcode.LOOP_END) {
+                int target = jumps[pc];
+                if (target < 0 || target >= code.length || jumps[target] != pc
+                        || code[target] != (code[pc] == Opcode.LOOP_START ? Opcode.LOOP_END : Opcode.LOOP_START)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValid(OptimizedProgram program, byte[] code) {
+        int codeLength = code.length;
+        int length = program.ops.length;
+        for (int pc = 0; pc < length; pc++) {
+            int arg = program.args[pc];
+            if (program.sources[pc] < 0 || program.sources[pc] >= codeLength
+                    || program.floors[pc] < program.offsets[pc]) {
+                return false;
+            }
+            switch (program.ops[pc]) {
+                case Opcode.LOOP_START:
+                case Opcode.LOOP_END:
+                case Opcode.RANGE:
+                    if (arg < 0 || arg >= length) {
+                        return false;
+                    }
+                    break;
+                case Opcode.ZERO:
+                    if (arg < -1 || arg >= program.idioms.length
+                            || (arg >= 0 && code[program.sources[pc]] != Opcode.LOOP_START)) {
+                        return false;
+                    }
+                    break;
+                case Opcode.MULTIPLY:
+                    if (arg < 0 || arg >= program.idioms.length || code[program.sources[pc]] != Opcode.LOOP_START
+                            || program.idioms[arg].exit < pc || program.idioms[arg].exit >= length) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (program.ops[pc] < 0 || program.ops[pc] > Opcode.RANGE) {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        return hash ^ bytes.length;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public final class CowProgramGenerator {
+    private static final String[] INSTRUCTIONS = {
+            "MoO", "MOo", "moO", "mOo", "MoO", "MOo", "moO", "mOo",
+            "MoO", "moO", "OOO", "MMM", "OOM", "Moo", "oom", "mOO"
+    };
+    private static final int INPUT_VALUES = 4;
+
+    private final Random random;
+    private int maxLength = 32;
+    private int maxDepth = 3;
+
+    public CowProgramGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public void setMaxLength(int maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("Program length must be positive: " + maxLength);
+        }
+        this.maxLength = maxLength;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Loop depth must not be negative: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    public String nextProgram() {
+        StringBuilder sb = new StringBuilder();
+        block(sb, 0, 1 + random.nextInt(maxLength));
+        return sb.toString().trim();
+    }
+
+    // Small integers, so oom reads values that land on real mOO targets and Moo reads digits.
+    public byte[] nextInput() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < INPUT_VALUES; i++) {
+            sb.append(random.nextInt(48) - 8).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void block(StringBuilder sb, int depth, int length) {
+        for (int i = 0; i < length; i++) {
+            if (depth < maxDepth && random.nextInt(6) == 0) {
+                loop(sb, depth);
+            } else {
+                sb.append(INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]).append(' ');
+            }
+        }
+    }
+
+    // Most loops move the pointer back and end the body by counting their cell down or clearing it,
+    // otherwise nearly all of them would run until the step budget. A negative counter never
+    // reaches zero, so two thirds of those loops clear it and run once.
+    private void loop(StringBuilder sb, int depth) {
+        StringBuilder body = new StringBuilder();
+        block(body, depth + 1, random.nextInt(Math.max(1, maxLength / 4)));
+        sb.append("MOO ").append(body);
+        int kind = random.nextInt(4);
+        if (kind != 0) {
+            int offset = 0;
+            for (String token : body.toString().split(" ")) {
+                if (token.equals("moO")) {
+                    offset++;
+                } else if (token.equals("mOo")) {
+                    offset--;
+                }
+            }
+            for (int i = 0; i < Math.abs(offset); i++) {
+                sb.append(offset > 0 ? "mOo " : "moO ");
+            }
+            sb.append(kind == 1 ? "MOo " : "OOO ");
+        }
+        sb.append("moo ");
+    }
+}
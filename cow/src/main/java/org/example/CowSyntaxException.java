@@ -0,0 +1,14 @@
+package org.example;
+
+public class CowSyntaxException extends RuntimeException {
+    private final int position;
+
+    public CowSyntaxException(String message, int position) {
+        super(message + " at instruction " + position);
+        this.position = position;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+}
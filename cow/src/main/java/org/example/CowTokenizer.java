@@ -0,0 +1,139 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class CowTokenizer {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int STATES = 21;
+    private static final int NO_OPCODE = -1;
+    private static final int[] TRANSITIONS = buildTransitions();
+
+    private byte[] code = new byte[1024];
+    private int size;
+    private int state;
+
+    public static byte[] tokenize(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return tokenize(channel);
+        }
+    }
+
+    public static byte[] tokenize(ReadableByteChannel channel) throws IOException {
+        CowTokenizer tokenizer = new CowTokenizer();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        while (channel.read(buffer) >= 0) {
+            tokenizer.feed(bytes, 0, buffer.position());
+            buffer.clear();
+        }
+        return tokenizer.finish();
+    }
+
+    public static byte[] tokenize(byte[] source) {
+        CowTokenizer tokenizer = new CowTokenizer();
+        tokenizer.feed(source, 0, source.length);
+        return tokenizer.finish();
+    }
+
+    private void feed(byte[] bytes, int offset, int length) {
+        int[] transitions = TRANSITIONS;
+        int state = this.state;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int transition = transitions[(state << 8) | (bytes[i] & 0xFF)];
+            state = transition & 0xFF;
+            if (transition >= 0) {
+                continue;
+            }
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size * 2);
+            }
+            code[size++] = (byte) ((transition >> 8) & 0xFF);
+        }
+        this.state = state;
+    }
+
+    private byte[] finish() {
+        return Arrays.copyOf(code, size);
+    }
+
+    private static int[] buildTransitions() {
+        int[] table = new int[STATES * 256];
+        for (int state = 0; state < STATES; state++) {
+            int[] pending = decode(state);
+            for (int b = 0; b < 256; b++) {
+                int letter = letter(b);
+                if (letter < 0) {
+                    table[(state << 8) | b] = 0;
+                    continue;
+                }
+                int[] window = Arrays.copyOf(pending, pending.length + 1);
+                window[pending.length] = letter;
+                int opcode = NO_OPCODE;
+                if (window.length == 3) {
+                    opcode = opcode(window);
+                    window = opcode == NO_OPCODE ? Arrays.copyOfRange(window, 1, 3) : new int[0];
+                }
+                int entry = encode(window);
+                if (opcode != NO_OPCODE) {
+                    entry |= Integer.MIN_VALUE | (opcode << 8);
+                }
+                table[(state << 8) | b] = entry;
+            }
+        }
+        return table;
+    }
+
+    private static int letter(int b) {
+        switch (b) {
+            case 'M':
+                return 0;
+            case 'm':
+                return 1;
+            case 'O':
+                return 2;
+            case 'o':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
+    private static int opcode(int[] window) {
+        char[] chars = new char[3];
+        for (int i = 0; i < 3; i++) {
+            chars[i] = "MmOo".charAt(window[i]);
+        }
+        try {
+            return Opcode.fromMnemonic(new String(chars));
+        } catch (IllegalArgumentException e) {
+            return NO_OPCODE;
+        }
+    }
+
+    private static int encode(int[] window) {
+        switch (window.length) {
+            case 0:
+                return 0;
+            case 1:
+                return 1 + window[0];
+            default:
+                return 5 + window[0] * 4 + window[1];
+        }
+    }
+
+    private static int[] decode(int state) {
+        if (state == 0) {
+            return new int[0];
+        }
+        if (state < 5) {
+            return new int[]{state - 1};
+        }
+        return new int[]{(state - 5) / 4, (state - 5) % 4};
+    }
+}
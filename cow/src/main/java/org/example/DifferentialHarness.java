@@ -0,0 +1,271 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DifferentialHarness {
+    public static final class Mismatch {
+        private final String program;
+        private final String input;
+        private final ExecutionMode engine;
+        private final String detail;
+
+        Mismatch(String program, byte[] input, ExecutionMode engine, String detail) {
+            this.program = program;
+            this.input = new String(input, StandardCharsets.US_ASCII).trim().replace('\n', ' ');
+            this.engine = engine;
+            this.detail = detail;
+        }
+
+        public String getProgram() {
+            return program;
+        }
+
+        public String getInput() {
+            return input;
+        }
+
+        public ExecutionMode getEngine() {
+            return engine;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    public static final class Report {
+        private int programs;
+        private int limited;
+        private final List<Mismatch> mismatches = new ArrayList<>();
+        private final Map<ExecutionMode, Long> nanos = new EnumMap<>(ExecutionMode.class);
+        private final Map<ExecutionMode, Integer> runs = new EnumMap<>(ExecutionMode.class);
+
+        public int getPrograms() {
+            return programs;
+        }
+
+        public int getLimited() {
+            return limited;
+        }
+
+        public List<Mismatch> getMismatches() {
+            return Collections.unmodifiableList(mismatches);
+        }
+
+        public long getNanos(ExecutionMode engine) {
+            return nanos.getOrDefault(engine, 0L);
+        }
+
+        public int getRuns(ExecutionMode engine) {
+            return runs.getOrDefault(engine, 0);
+        }
+    }
+
+    private static final class Snapshot {
+        final String limit;
+        final String output;
+        final int[] cells;
+        final Integer register;
+        final long nanos;
+
+        Snapshot(String limit, String output, int[] cells, Integer register, long nanos) {
+            this.limit = limit;
+            this.output = output;
+            this.cells = cells;
+            this.register = register;
+            this.nanos = nanos;
+        }
+
+        String diff(Snapshot other) {
+            if (!Objects.equals(limit, other.limit)) {
+                return (other.limit == null ? "finished" : other.limit) + ", expected "
+                        + (limit == null ? "to finish" : limit);
+            }
+            if (!output.equals(other.output)) {
+                return "output " + quote(other.output) + ", expected " + quote(output);
+            }
+            if (!Objects.equals(register, other.register)) {
+                return "register " + other.register + ", expected " + register;
+            }
+            if (cells.length != other.cells.length) {
+                return "tape size " + other.cells.length + ", expected " + cells.length;
+            }
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] != other.cells[i]) {
+                    return "cell " + i + " = " + other.cells[i] + ", expected " + cells[i];
+                }
+            }
+            return null;
+        }
+
+        private static String quote(String text) {
+            return '"' + text.replace("\n", "\\n") + '"';
+        }
+    }
+
+    private final List<ExecutionMode> engines;
+    private long stepLimit = 100_000;
+    private long timeoutMillis = 10_000;
+    private int cellBits = 32;
+
+    public DifferentialHarness(List<ExecutionMode> engines) {
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("No engines to compare");
+        }
+        this.engines = new ArrayList<>(engines);
+    }
+
+    public static List<ExecutionMode> availableEngines() {
+        List<ExecutionMode> engines = new ArrayList<>(Arrays.asList(ExecutionMode.values()));
+        if (!BytecodeCompiler.isAvailable()) {
+            engines.remove(ExecutionMode.BYTECODE);
+        }
+        return engines;
+    }
+
+    public void setStepLimit(long stepLimit) {
+        if (stepLimit < 1) {
+            throw new IllegalArgumentException("Step limit must be positive: " + stepLimit);
+        }
+        this.stepLimit = stepLimit;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void setCellBits(int cellBits) {
+        if (!TapeKind.DENSE.supports(cellBits)) {
+            throw new IllegalArgumentException("Unsupported cell width: " + cellBits);
+        }
+        this.cellBits = cellBits;
+    }
+
+    public Report run(CowProgramGenerator generator, int count) {
+        Report report = new Report();
+        for (int i = 0; i < count; i++) {
+            check(generator.nextProgram(), generator.nextInput(), report);
+        }
+        return report;
+    }
+
+    // The reference engine runs first under the step budget, and every engine under test runs under
+    // the same budget so that the metered paths are compared too, down to where a limit stops them.
+    // Programs the reference finishes also run unmetered, on each engine's fastest path, with a
+    // timeout only as a backstop.
+    public void check(String source, byte[] input, Report report) {
+        CompiledCowProgram program = CompiledCowProgram.compile(source.getBytes(StandardCharsets.US_ASCII));
+        Snapshot expected = execute(program, ExecutionMode.REFERENCE, input, stepLimit);
+        boolean finished = expected.limit == null;
+        report.programs++;
+        if (!finished) {
+            report.limited++;
+        }
+        for (ExecutionMode engine : engines) {
+            String detail;
+            try {
+                Snapshot[] actual = executeWithTimeout(program, engine, input, finished);
+                if ((detail = expected.diff(actual[0])) != null) {
+                    detail = "under the step budget: " + detail;
+                } else if (finished) {
+                    report.nanos.merge(engine, actual[2].nanos, Long::sum);
+                    report.runs.merge(engine, 1, Integer::sum);
+                    if ((detail = expected.diff(actual[1])) == null && (detail = expected.diff(actual[2])) != null) {
+                        detail = "second run: " + detail;
+                    }
+                }
+            } catch (TimeoutException e) {
+                detail = "did not finish within " + timeoutMillis + " ms";
+            } catch (ExecutionException e) {
+                detail = e.getCause().toString();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (detail != null) {
+                report.mismatches.add(new Mismatch(source, input, engine, detail));
+            }
+        }
+    }
+
+    // A finished program then runs twice more unmetered and only the last run is timed, so lazily
+    // built engine code is not charged to it. A runaway engine cannot be stopped and is left behind
+    // on a daemon thread.
+    private Snapshot[] executeWithTimeout(CompiledCowProgram program, ExecutionMode engine, byte[] input,
+                                          boolean unmetered)
+            throws TimeoutException, ExecutionException, InterruptedException {
+        FutureTask<Snapshot[]> task = new FutureTask<>(() -> {
+            Snapshot metered = execute(program, engine, input, stepLimit);
+            if (!unmetered) {
+                return new Snapshot[]{metered};
+            }
+            return new Snapshot[]{
+                    metered,
+                    execute(program, engine, input, Long.MAX_VALUE),
+                    execute(program, engine, input, Long.MAX_VALUE)
+            };
+        });
+        Thread thread = new Thread(task, "cow-differential-" + engine.name().toLowerCase());
+        thread.setDaemon(true);
+        thread.start();
+        return task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Snapshot execute(CompiledCowProgram program, ExecutionMode engine, byte[] input, long limit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CowExecution execution = program.newExecution(TapeKind.DENSE.create(cellBits),
+                new CowInput(new ByteArrayInputStream(input)), new CowOutput(bytes));
+        execution.setExecutionMode(engine);
+        if (limit != Long.MAX_VALUE) {
+            execution.setStepLimit(limit);
+        }
+        String stopped = null;
+        long start = System.nanoTime();
+        try {
+            execution.run();
+        } catch (CowLimitExceededException e) {
+            stopped = "stopped at instruction " + e.getPc() + " after " + e.getSteps() + " steps";
+        }
+        long nanos = System.nanoTime() - start;
+        return new Snapshot(stopped, new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1),
+                CowCheckpoint.capture(execution.getTape()), execution.getRegister(), nanos);
+    }
+
+    // Times come from single runs of programs that take microseconds, so they only show the order of
+    // magnitude; engines are compared properly by the JMH benchmarks.
+    public static void writeReport(Report report, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("engine\truns\ttime_ms\tmean_us");
+        for (ExecutionMode engine : ExecutionMode.values()) {
+            int runs = report.getRuns(engine);
+            if (runs == 0) {
+                continue;
+            }
+            long nanos = report.getNanos(engine);
+            out.printf(Locale.ROOT, "%s\t%d\t%.3f\t%.1f%n", engine, runs, nanos / 1e6, nanos / 1e3 / runs);
+        }
+        for (Mismatch mismatch : report.mismatches) {
+            out.printf("MISMATCH\t%s\t%s\tinput: %s\t%s%n", mismatch.engine, mismatch.detail.replace('\t', ' '),
+                    mismatch.input, mismatch.program);
+        }
+        out.printf(Locale.ROOT, "# %d programs compared, %d stopped by the step budget, %d mismatches%n",
+                report.programs, report.limited, report.mismatches.size());
+        out.flush();
+    }
+}
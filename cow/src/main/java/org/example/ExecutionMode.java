@@ -0,0 +1,13 @@
+package org.example;
+
+public enum ExecutionMode {
+    REFERENCE,
+    OPCODE,
+    OPTIMIZED,
+    THREADED,
+    BYTECODE;
+
+    public static ExecutionMode fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,6 @@
+package org.example;
+
+public enum FlushPolicy {
+    BUFFERED,
+    LINE
+}
@@ -0,0 +1,37 @@
+package org.example;
+
+public abstract class GeneratedProgram {
+    protected abstract int run(CowExecution execution, Tape tape, int pointer);
+
+    protected static int single(CowExecution execution, int opcode, int pointer) {
+        return execution.executeSingle((byte) opcode, pointer);
+    }
+
+    protected static void backEdge(CowExecution execution, Tape tape, int pointer, int span, int pc) {
+        if (execution.metered && tape.get(pointer) != 0) {
+            execution.setPointer(pointer);
+            execution.charge(span, pc);
+        }
+    }
+
+    protected static boolean presize(CowExecution execution, Tape tape, int pointer, int lowest, int reach) {
+        if (execution.metered || tape.get(pointer) == 0 || pointer + lowest < 0) {
+            return false;
+        }
+        tape.ensure(pointer + reach);
+        return true;
+    }
+
+    protected static boolean metered(CowExecution execution) {
+        return execution.metered;
+    }
+
+    protected static void idiom(CowExecution execution, int pointer, int index, int source) {
+        execution.runIdiom(execution.getProgram().getOptimizedProgram().idioms[index], pointer, source);
+    }
+
+    protected static int decode(CowExecution execution, int target) {
+        byte[] code = execution.getProgram().code;
+        return target >= 0 && target < code.length ? code[target] : -1;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import java.util.Arrays;
+
+public class IntArrayTape implements Tape {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private int[] cells;
+    private int size;
+
+    public IntArrayTape() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public IntArrayTape(int initialCapacity) {
+        this.cells = new int[Math.max(1, initialCapacity)];
+        this.size = 1;
+    }
+
+    @Override
+    public int get(int index) {
+        return cells[index];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        cells[index] = value;
+    }
+
+    @Override
+    public void add(int index, int delta) {
+        cells[index] += delta;
+    }
+
+    @Override
+    public void ensure(int index) {
+        if (index >= size) {
+            extend(index);
+        }
+    }
+
+    private void extend(int index) {
+        if (index >= cells.length) {
+            if (index >= MAX_CAPACITY) {
+                throw new OutOfMemoryError("Tape cannot grow beyond " + MAX_CAPACITY + " cells");
+            }
+            long capacity = Math.max((long) cells.length * 2, (long) index + 1);
+            cells = Arrays.copyOf(cells, (int) Math.min(capacity, MAX_CAPACITY));
+        }
+        size = index + 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(cells, 0, size, 0);
+        size = 1;
+    }
+}
@@ -0,0 +1,121 @@
+package org.example;
+
+import java.util.Arrays;
+
+final class LoopIdiom {
+    final int[] offsets;
+    final int[] factors;
+    final int counterInverse;
+    final int counterDelta;
+    final int minOffset;
+    final int maxOffset;
+    int exit;
+
+    LoopIdiom(int[] offsets, int[] factors, int counterInverse, int minOffset, int maxOffset) {
+        this.offsets = offsets;
+        this.factors = factors;
+        this.counterInverse = counterInverse;
+        this.counterDelta = inverse(counterInverse);
+        this.minOffset = minOffset;
+        this.maxOffset = maxOffset;
+    }
+
+    boolean needsGuard() {
+        return minOffset < 0;
+    }
+
+    static LoopIdiom analyze(byte[] code, int start) {
+        int offset = 0;
+        int minOffset = 0;
+        int maxOffset = 0;
+        int counterDelta = 0;
+        int[] offsets = new int[4];
+        int[] factors = new int[4];
+        int targets = 0;
+
+        for (int pc = start + 1; code[pc] != Opcode.LOOP_END; pc++) {
+            switch (code[pc]) {
+                case Opcode.INC:
+                case Opcode.DEC: {
+                    int delta = code[pc] == Opcode.INC ? 1 : -1;
+                    if (offset == 0) {
+                        counterDelta += delta;
+                        break;
+                    }
+                    int slot = 0;
+                    while (slot < targets && offsets[slot] != offset) {
+                        slot++;
+                    }
+                    if (slot == targets) {
+                        if (targets == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, targets * 2);
+                            factors = Arrays.copyOf(factors, targets * 2);
+                        }
+                        offsets[targets++] = offset;
+                    }
+                    factors[slot] += delta;
+                    break;
+                }
+                case Opcode.RIGHT:
+                    offset++;
+                    maxOffset = Math.max(maxOffset, offset);
+                    break;
+                case Opcode.LEFT:
+                    offset--;
+                    minOffset = Math.min(minOffset, offset);
+                    break;
+                default:
+                    return null;
+            }
+        }
+
+        if (offset != 0 || (counterDelta & 1) == 0) {
+            return null;
+        }
+
+        int kept = 0;
+        for (int i = 0; i < targets; i++) {
+            if (factors[i] != 0) {
+                offsets[kept] = offsets[i];
+                factors[kept] = factors[i];
+                kept++;
+            }
+        }
+        return new LoopIdiom(Arrays.copyOf(offsets, kept), Arrays.copyOf(factors, kept),
+                inverse(counterDelta), minOffset, maxOffset);
+    }
+
+    boolean isClear() {
+        return offsets.length == 0 && minOffset == 0 && maxOffset == 0;
+    }
+
+    // Iterations the literal loop runs from this counter value, modulo the cell width.
+    long iterations(int counter, int cellBits) {
+        long iterations = Integer.toUnsignedLong(-counter * counterInverse);
+        return cellBits < 32 ? iterations & ((1L << cellBits) - 1) : iterations;
+    }
+
+    void advance(Tape tape, int pointer, int iterations) {
+        for (int i = 0; i < offsets.length; i++) {
+            tape.add(pointer + offsets[i], factors[i] * iterations);
+        }
+        tape.add(pointer, counterDelta * iterations);
+    }
+
+    void apply(Tape tape, int pointer) {
+        int iterations = -tape.get(pointer) * counterInverse;
+        tape.ensure(pointer + maxOffset);
+        for (int i = 0; i < offsets.length; i++) {
+            tape.add(pointer + offsets[i], factors[i] * iterations);
+        }
+        tape.set(pointer, 0);
+    }
+
+    private static int inverse(int odd) {
+        int x = odd;
+        for (int i = 0; i < 5; i++) {
+            x *= 2 - odd * x;
+        }
+        return x;
+    }
+}
@@ -1,29 +1,376 @@
 package org.example;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Main {
+    private static final long CHECKPOINT_TIMEOUT_MS = 10_000;
+    private static final String USAGE =
+            "Usage: java -jar cow-interpreter.jar [--engine=reference|opcode|optimized|threaded|bytecode]"
+                    + " [--tape=dense|paged|offheap|mapped] [--tape-file=<file>] [--cells=8|16|32] [--flush=buffered|line]"
+                    + " [--charset=<name>] [--profile=<report>] [--max-steps=N] [--max-tape=N] [--checkpoint=<file>]"
+                    + " [--checkpoint-every=N] [--resume=<file>] <filename.cow>\n"
+                    + "       java -jar cow-interpreter.jar --batch=<directory|manifest> [--jobs=N] [--summary=<file>]"
+                    + " [--engine=...] [--tape=...] [--cells=...]\n"
+                    + "       java -jar cow-interpreter.jar cowc <filename.cow> [<output.cowc>]\n"
+                    + "       java -jar cow-interpreter.jar fuzz [--seed=N] [--programs=N] [--max-steps=N]"
+                    + " [--max-length=N] [--cells=8|16|32] [--engine=<engine>,...]";
+
     public static void main(String[] args) {
-        if (args.length == 0) {
-            System.out.println("Usage: java -jar cow-interpreter.jar <filename.cow>");
+        if (args.length > 0 && args[0].equals("cowc")) {
+            System.exit(compileCache(args));
+        }
+        if (args.length > 0 && args[0].equals("fuzz")) {
+            System.exit(fuzz(args));
+        }
+
+        String filename = null;
+        String profileReport = null;
+        String batch = null;
+        String summary = null;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        long stepLimit = Long.MAX_VALUE;
+        int maxTapeSize = Integer.MAX_VALUE;
+        String checkpoint = null;
+        String resume = null;
+        long checkpointEvery = Long.MAX_VALUE;
+        ExecutionMode mode = ExecutionMode.OPTIMIZED;
+        TapeKind tapeKind = TapeKind.DENSE;
+        Path tapeFile = null;
+        int cellBits = 32;
+        FlushPolicy flushPolicy = System.console() != null ? FlushPolicy.LINE : FlushPolicy.BUFFERED;
+        Charset charset = Charset.defaultCharset();
+
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                try {
+                    mode = ExecutionMode.fromName(arg.substring("--engine=".length()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown engine: " + arg.substring("--engine=".length()));
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--tape=")) {
+                try {
+                    tapeKind = TapeKind.fromName(arg.substring("--tape=".length()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown tape: " + arg.substring("--tape=".length()));
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--tape-file=")) {
+                tapeFile = Paths.get(arg.substring("--tape-file=".length()));
+            } else if (arg.startsWith("--cells=")) {
+                String bits = arg.substring("--cells=".length());
+                if (!bits.equals("8") && !bits.equals("16") && !bits.equals("32")) {
+                    System.err.println("Unsupported cell width: " + bits);
+                    System.exit(1);
+                }
+                cellBits = Integer.parseInt(bits);
+            } else if (arg.equals("--flush=line")) {
+                flushPolicy = FlushPolicy.LINE;
+            } else if (arg.equals("--flush=buffered")) {
+                flushPolicy = FlushPolicy.BUFFERED;
+            } else if (arg.startsWith("--charset=")) {
+                try {
+                    charset = Charset.forName(arg.substring("--charset=".length()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unsupported charset: " + arg.substring("--charset=".length()));
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--profile=")) {
+                profileReport = arg.substring("--profile=".length());
+            } else if (arg.startsWith("--batch=")) {
+                batch = arg.substring("--batch=".length());
+            } else if (arg.startsWith("--summary=")) {
+                summary = arg.substring("--summary=".length());
+            } else if (arg.startsWith("--max-steps=")) {
+                stepLimit = parsePositive(arg, "--max-steps=");
+            } else if (arg.startsWith("--max-tape=")) {
+                maxTapeSize = (int) Math.min(Integer.MAX_VALUE, parsePositive(arg, "--max-tape="));
+            } else if (arg.startsWith("--checkpoint=")) {
+                checkpoint = arg.substring("--checkpoint=".length());
+            } else if (arg.startsWith("--checkpoint-every=")) {
+                checkpointEvery = parsePositive(arg, "--checkpoint-every=");
+            } else if (arg.startsWith("--resume=")) {
+                resume = arg.substring("--resume=".length());
+            } else if (arg.startsWith("--jobs=")) {
+                try {
+                    jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs < 1) {
+                    System.err.println("Invalid job count: " + arg.substring("--jobs=".length()));
+                    System.exit(1);
+                }
+            } else if (filename == null) {
+                filename = arg;
+            } else {
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+        }
+
+        if ((filename == null) == (batch == null)
+                || (checkpointEvery != Long.MAX_VALUE && checkpoint == null && resume == null)) {
+            System.out.println(USAGE);
+            System.exit(1);
+        }
+
+        if (tapeFile != null) {
+            if (batch != null) {
+                System.err.println("--tape-file cannot be shared by batch jobs");
+                System.exit(1);
+            }
+            if (tapeKind == TapeKind.DENSE) {
+                tapeKind = TapeKind.MAPPED;
+            } else if (tapeKind != TapeKind.MAPPED) {
+                System.err.println("--tape-file requires --tape=mapped");
+                System.exit(1);
+            }
+        }
+
+        if (!tapeKind.supports(cellBits)) {
+            System.err.println("The " + tapeKind.name().toLowerCase() + " tape does not support "
+                    + cellBits + "-bit cells");
+            System.exit(1);
+        }
+
+        if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+            System.err.println("No Java compiler available, falling back to the optimized interpreter");
+            mode = ExecutionMode.OPTIMIZED;
+        }
+
+        if (batch != null) {
+            BatchRunner runner = new BatchRunner(jobs);
+            runner.setExecutionMode(mode);
+            runner.setTapeKind(tapeKind, cellBits);
+            runner.setStepLimit(stepLimit);
+            runner.setMaxTapeSize(maxTapeSize);
+            System.exit(runBatch(runner, Paths.get(batch), summary));
+        }
+
+        Tape tape = null;
+        try {
+            tape = tapeKind.create(cellBits, tapeFile);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error creating tape: " + e.getCause().getMessage());
+            System.exit(1);
+        }
+
+        CowOutput output = null;
+        try {
+            output = new CowOutput(new FileOutputStream(FileDescriptor.out), flushPolicy, charset);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
             System.exit(1);
         }
+        CowInput input = new CowInput(new FileInputStream(FileDescriptor.in));
+        CowInterpreter interpreter = new CowInterpreter(tape, input, output);
+        interpreter.setExecutionMode(mode);
+        interpreter.setStepLimit(stepLimit);
+        interpreter.setMaxTapeSize(maxTapeSize);
+        Path profilePath = profileReport != null ? Paths.get(profileReport) : null;
+        CowProfiler profiler = profilePath != null ? new CowProfiler() : null;
+        AtomicBoolean profileWritten = new AtomicBoolean();
+        if (profiler != null) {
+            interpreter.setProfiler(profiler);
+            // A run stopped by a signal still leaves a report of where it spent its time.
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                    writeProfile(profiler, interpreter, profilePath, profileWritten)));
+        }
 
-        String filename = args[0];
-        CowInterpreter interpreter = new CowInterpreter();
+        Path checkpointFile = checkpoint != null ? Paths.get(checkpoint) : resume != null ? Paths.get(resume) : null;
+        if (checkpointFile != null) {
+            interpreter.setCheckpointing(checkpointFile, checkpointEvery);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                interpreter.requestCheckpoint();
+                try {
+                    interpreter.awaitCheckpoint(CHECKPOINT_TIMEOUT_MS);
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
 
+        int exitCode = 0;
         try {
             interpreter.loadProgram(filename);
-            interpreter.execute();
+            if (resume != null) {
+                interpreter.resume(CowCheckpoint.read(Paths.get(resume)));
+            } else {
+                interpreter.execute();
+            }
+            if (checkpointFile != null) {
+                Files.deleteIfExists(checkpointFile);
+            }
         } catch (IOException e) {
             System.err.println("Error reading file: " + e.getMessage());
-            System.exit(1);
+            exitCode = 1;
+        } catch (UncheckedIOException e) {
+            System.err.println("Error writing output: " + e.getCause().getMessage());
+            exitCode = 1;
+        } catch (CowSyntaxException e) {
+            System.err.println("Syntax error: " + e.getMessage());
+            exitCode = 1;
+        } catch (CowLimitExceededException e) {
+            System.err.println("Limit exceeded: " + e.getMessage());
+            exitCode = 2;
+        } catch (CowCheckpointException e) {
+            System.err.println("Cannot resume: " + e.getMessage());
+            exitCode = 1;
         } catch (Exception e) {
             System.err.println("Error executing program: " + e.getMessage());
             e.printStackTrace();
-            System.exit(1);
+            exitCode = 1;
         } finally {
+            if (profiler != null) {
+                writeProfile(profiler, interpreter, profilePath, profileWritten);
+            }
             interpreter.close();
         }
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    private static void writeProfile(CowProfiler profiler, CowInterpreter interpreter, Path report,
+                                     AtomicBoolean written) {
+        if (!written.compareAndSet(false, true)) {
+            return;
+        }
+        profiler.finish(interpreter.getTape().size());
+        try {
+            profiler.writeFiles(report);
+        } catch (IOException e) {
+            System.err.println("Error writing profile: " + e.getMessage());
+        }
+    }
+
+    private static int compileCache(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.out.println(USAGE);
+            return 1;
+        }
+        Path source = Paths.get(args[1]);
+        Path target = args.length == 3 ? Paths.get(args[2]) : CowProgramCache.defaultTarget(source);
+        try {
+            CowProgramCache.compile(source, target);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error compiling program: " + e.getMessage());
+        } catch (CowSyntaxException e) {
+            System.err.println("Syntax error: " + e.getMessage());
+        }
+        return 1;
+    }
+
+    private static int fuzz(String[] args) {
+        long seed = System.nanoTime();
+        long programs = 1000;
+        List<ExecutionMode> engines = DifferentialHarness.availableEngines();
+        long stepLimit = 0;
+        int cellBits = 32;
+        int maxLength = 0;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--seed=")) {
+                try {
+                    seed = Long.parseLong(arg.substring("--seed=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid value: " + arg);
+                    return 1;
+                }
+            } else if (arg.startsWith("--programs=")) {
+                programs = parsePositive(arg, "--programs=");
+            } else if (arg.startsWith("--max-steps=")) {
+                stepLimit = parsePositive(arg, "--max-steps=");
+            } else if (arg.startsWith("--max-length=")) {
+                maxLength = (int) Math.min(Integer.MAX_VALUE, parsePositive(arg, "--max-length="));
+            } else if (arg.startsWith("--cells=")) {
+                String bits = arg.substring("--cells=".length());
+                if (!bits.equals("8") && !bits.equals("16") && !bits.equals("32")) {
+                    System.err.println("Unsupported cell width: " + bits);
+                    return 1;
+                }
+                cellBits = Integer.parseInt(bits);
+            } else if (arg.startsWith("--engine=")) {
+                engines = new ArrayList<>();
+                for (String name : arg.substring("--engine=".length()).split(",")) {
+                    try {
+                        engines.add(ExecutionMode.fromName(name));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Unknown engine: " + name);
+                        return 1;
+                    }
+                }
+            } else {
+                System.out.println(USAGE);
+                return 1;
+            }
+        }
+
+        DifferentialHarness harness = new DifferentialHarness(engines);
+        if (stepLimit > 0) {
+            harness.setStepLimit(stepLimit);
+        }
+        harness.setCellBits(cellBits);
+        CowProgramGenerator generator = new CowProgramGenerator(seed);
+        if (maxLength > 0) {
+            generator.setMaxLength(maxLength);
+        }
+        System.out.println("# seed " + seed);
+        DifferentialHarness.Report report = harness.run(generator, (int) Math.min(programs, Integer.MAX_VALUE));
+        DifferentialHarness.writeReport(report, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        return report.getMismatches().isEmpty() ? 0 : 1;
+    }
+
+    private static long parsePositive(String arg, String prefix) {
+        try {
+            long value = Long.parseLong(arg.substring(prefix.length()));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        System.err.println("Invalid value: " + arg);
+        System.exit(1);
+        return 0;
+    }
+
+    private static int runBatch(BatchRunner runner, Path source, String summary) {
+        try {
+            List<BatchRunner.Result> results = runner.run(BatchRunner.discover(source));
+            if (summary != null) {
+                try (Writer writer = Files.newBufferedWriter(Paths.get(summary), StandardCharsets.UTF_8)) {
+                    BatchRunner.writeSummary(results, writer);
+                }
+            } else {
+                BatchRunner.writeSummary(results, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            }
+            for (BatchRunner.Result result : results) {
+                if (result.getStatus() != BatchRunner.Status.OK) {
+                    return 1;
+                }
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error reading batch: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
     }
 }
@@ -0,0 +1,195 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class OffHeapTape implements Tape {
+    public static final int CHUNK_BITS = 20;
+    public static final int CHUNK_CELLS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_CELLS - 1;
+    private static final int CHUNK_BYTES = CHUNK_CELLS * Integer.BYTES;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final FileChannel file;
+    private final Path temporaryFile;
+    private ByteBuffer[] chunks;
+    private int size;
+    private int allocatedChunks;
+    private boolean closed;
+
+    public OffHeapTape() {
+        this(null, null);
+    }
+
+    private OffHeapTape(FileChannel file, Path temporaryFile) {
+        this.file = file;
+        this.temporaryFile = temporaryFile;
+        this.chunks = new ByteBuffer[4];
+        this.size = 1;
+    }
+
+    public static OffHeapTape mapped(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.truncate(0);
+        return new OffHeapTape(channel, null);
+    }
+
+    public static OffHeapTape mappedTemporary() throws IOException {
+        Path path = Files.createTempFile("cow-tape", ".bin");
+        return new OffHeapTape(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE), path);
+    }
+
+    @Override
+    public int get(int index) {
+        ByteBuffer chunk = chunks[index >>> CHUNK_BITS];
+        return chunk == null ? 0 : chunk.getInt((index & CHUNK_MASK) << 2);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        ByteBuffer chunk = chunks[index >>> CHUNK_BITS];
+        if (chunk == null) {
+            if (value == 0) {
+                return;
+            }
+            chunk = allocate(index >>> CHUNK_BITS);
+        }
+        chunk.putInt((index & CHUNK_MASK) << 2, value);
+    }
+
+    @Override
+    public void add(int index, int delta) {
+        ByteBuffer chunk = chunks[index >>> CHUNK_BITS];
+        if (chunk == null) {
+            if (delta == 0) {
+                return;
+            }
+            chunk = allocate(index >>> CHUNK_BITS);
+        }
+        int offset = (index & CHUNK_MASK) << 2;
+        chunk.putInt(offset, chunk.getInt(offset) + delta);
+    }
+
+    @Override
+    public void ensure(int index) {
+        if (index >= size) {
+            int directory = (index >>> CHUNK_BITS) + 1;
+            if (directory > chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(directory, chunks.length * 2));
+            }
+            size = index + 1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        release();
+        size = 1;
+        if (file != null && !closed) {
+            try {
+                file.truncate(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        release();
+        if (file != null) {
+            try {
+                file.close();
+                if (temporaryFile != null) {
+                    Files.deleteIfExists(temporaryFile);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public long getAllocatedBytes() {
+        return (long) allocatedChunks * CHUNK_BYTES;
+    }
+
+    public boolean isFileBacked() {
+        return file != null;
+    }
+
+    private ByteBuffer allocate(int chunkIndex) {
+        if (closed) {
+            throw new IllegalStateException("Tape is closed");
+        }
+        ByteBuffer chunk;
+        if (file == null) {
+            chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        } else {
+            try {
+                chunk = file.map(FileChannel.MapMode.READ_WRITE, (long) chunkIndex * CHUNK_BYTES, CHUNK_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        chunk.order(ByteOrder.nativeOrder());
+        chunks[chunkIndex] = chunk;
+        allocatedChunks++;
+        return chunk;
+    }
+
+    private void release() {
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                free(chunks[i]);
+                chunks[i] = null;
+            }
+        }
+        allocatedChunks = 0;
+    }
+
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException ignored) {
+        }
+    }
+}
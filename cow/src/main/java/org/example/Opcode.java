@@ -0,0 +1,65 @@
+package org.example;
+
+public final class Opcode {
+    public static final byte LOOP_END = 0;      // moo
+    public static final byte LEFT = 1;          // mOo
+    public static final byte RIGHT = 2;         // moO
+    public static final byte EXEC = 3;          // mOO
+    public static final byte CHAR_IO = 4;       // Moo
+    public static final byte DEC = 5;           // MOo
+    public static final byte INC = 6;           // MoO
+    public static final byte LOOP_START = 7;    // MOO
+    public static final byte ZERO = 8;          // OOO
+    public static final byte REGISTER = 9;      // MMM
+    public static final byte PRINT_INT = 10;    // OOM
+    public static final byte READ_INT = 11;     // oom
+
+    public static final int COUNT = 12;
+
+    public static final byte ADD = 12;          // MoO/MOo run, argument is the net delta
+    public static final byte MOVE = 13;         // moO/mOo run, pointer becomes the located cell
+    public static final byte ENSURE = 14;       // grows the tape to the furthest cell a move run reaches
+    public static final byte MULTIPLY = 15;     // copy/multiply loop, argument is the idiom index
+    public static final byte SHIFT = 16;        // moO/mOo run that cannot clamp or grow the tape
+    public static final byte RANGE = 17;        // pre-sizing guard, argument is the unchecked copy of the loop
+
+    private static final String[] MNEMONICS = {
+            "moo", "mOo", "moO", "mOO", "Moo", "MOo",
+            "MoO", "MOO", "OOO", "MMM", "OOM", "oom"
+    };
+
+    private Opcode() {
+    }
+
+    public static byte fromMnemonic(String mnemonic) {
+        for (int i = 0; i < MNEMONICS.length; i++) {
+            if (MNEMONICS[i].equals(mnemonic)) {
+                return (byte) i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown instruction: " + mnemonic);
+    }
+
+    public static String mnemonic(byte opcode) {
+        return MNEMONICS[opcode];
+    }
+
+    public static String name(byte opcode) {
+        switch (opcode) {
+            case ADD:
+                return "ADD";
+            case MOVE:
+                return "MOVE";
+            case ENSURE:
+                return "ENSURE";
+            case MULTIPLY:
+                return "MULTIPLY";
+            case SHIFT:
+                return "SHIFT";
+            case RANGE:
+                return "RANGE";
+            default:
+                return mnemonic(opcode);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example;
+
+public final class OptimizedProgram {
+    final byte[] ops;
+    final int[] args;
+    final int[] offsets;
+    final int[] floors;
+    final int[] sources;
+    final LoopIdiom[] idioms;
+    private int loopDepth = -1;
+
+    OptimizedProgram(byte[] ops, int[] args, int[] offsets, int[] floors, int[] sources, LoopIdiom[] idioms) {
+        this.ops = ops;
+        this.args = args;
+        this.offsets = offsets;
+        this.floors = floors;
+        this.sources = sources;
+        this.idioms = idioms;
+    }
+
+    public int length() {
+        return ops.length;
+    }
+
+    public byte op(int index) {
+        return ops[index];
+    }
+
+    public int arg(int index) {
+        return args[index];
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int floor(int index) {
+        return floors[index];
+    }
+
+    // ADD, ZERO, MOVE and ENSURE work on the cell max(pointer + offset, floor), pointer being
+    // its value before the move run they belong to; the floor is where mOo clamping at 0 lands.
+    // RANGE keeps the lowest offset its loop reaches and the furthest cell it pre-sizes instead.
+    // A ZERO that replaces a clear loop keeps the loop's idiom in its argument, OOO keeps -1.
+    static int cell(int pointer, int offset, int floor) {
+        return Math.max(pointer + offset, floor);
+    }
+
+    public int source(int index) {
+        return sources[index];
+    }
+
+    // The checked copy of a RANGE loop comes first, so resuming never skips its guard.
+    int loopBodyStart(int sourceLoopEnd) {
+        for (int i = 0; i < ops.length; i++) {
+            if (ops[i] == Opcode.LOOP_END && sources[i] == sourceLoopEnd) {
+                return args[i] + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Deepest loop nesting, both RANGE copies included; the tree-shaped engines recurse once per level.
+    int loopDepth() {
+        int result = loopDepth;
+        if (result < 0) {
+            result = 0;
+            int depth = 0;
+            for (int i = 0; i < ops.length; i++) {
+                if (ops[i] == Opcode.LOOP_END) {
+                    depth--;
+                } else if (ops[i] == Opcode.LOOP_START || (ops[i] == Opcode.MULTIPLY && idioms[args[i]].exit > i)) {
+                    result = Math.max(result, ++depth);
+                }
+            }
+            loopDepth = result;
+        }
+        return result;
+    }
+
+    int loopSpan(int loopEnd) {
+        return sources[loopEnd] - sources[args[loopEnd]] + 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ops.length; i++) {
+            sb.append(i).append(": ").append(Opcode.name(ops[i]));
+            if (ops[i] == Opcode.MULTIPLY) {
+                LoopIdiom idiom = idioms[args[i]];
+                for (int k = 0; k < idiom.offsets.length; k++) {
+                    sb.append(" [").append(idiom.offsets[k]).append("]*").append(idiom.factors[k]);
+                }
+                sb.append(" exit ").append(idiom.exit);
+            } else if (ops[i] == Opcode.RANGE) {
+                sb.append(' ').append(args[i]).append(" [").append(offsets[i]).append(", ").append(floors[i]).append(']');
+            } else if (ops[i] == Opcode.LOOP_START || ops[i] == Opcode.LOOP_END || ops[i] == Opcode.ADD) {
+                sb.append(' ').append(args[i]);
+            }
+            if (ops[i] != Opcode.RANGE && (offsets[i] != 0 || floors[i] != 0)) {
+                sb.append(" @").append(offsets[i]);
+                if (floors[i] > offsets[i]) {
+                    sb.append(" floor ").append(floors[i]);
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package org.example;
+
+import java.util.Arrays;
+
+public class PagedTape implements Tape {
+    public static final int PAGE_BITS = 12;
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private int[][] pages;
+    private int size;
+    private int allocatedPages;
+
+    public PagedTape() {
+        this.pages = new int[16][];
+        this.size = 1;
+    }
+
+    @Override
+    public int get(int index) {
+        int[] page = pages[index >>> PAGE_BITS];
+        return page == null ? 0 : page[index & PAGE_MASK];
+    }
+
+    @Override
+    public void set(int index, int value) {
+        int[] page = pages[index >>> PAGE_BITS];
+        if (page == null) {
+            if (value == 0) {
+                return;
+            }
+            page = allocate(index >>> PAGE_BITS);
+        }
+        page[index & PAGE_MASK] = value;
+    }
+
+    @Override
+    public void add(int index, int delta) {
+        int[] page = pages[index >>> PAGE_BITS];
+        if (page == null) {
+            if (delta == 0) {
+                return;
+            }
+            page = allocate(index >>> PAGE_BITS);
+        }
+        page[index & PAGE_MASK] += delta;
+    }
+
+    @Override
+    public void ensure(int index) {
+        if (index >= size) {
+            int directory = (index >>> PAGE_BITS) + 1;
+            if (directory > pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(directory, pages.length * 2));
+            }
+            size = index + 1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(pages, null);
+        size = 1;
+        allocatedPages = 0;
+    }
+
+    public int getAllocatedPages() {
+        return allocatedPages;
+    }
+
+    private int[] allocate(int pageIndex) {
+        int[] page = new int[PAGE_SIZE];
+        pages[pageIndex] = page;
+        allocatedPages++;
+        return page;
+    }
+}
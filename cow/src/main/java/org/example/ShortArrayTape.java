@@ -0,0 +1,69 @@
+package org.example;
+
+import java.util.Arrays;
+
+public class ShortArrayTape implements Tape {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private short[] cells;
+    private int size;
+
+    public ShortArrayTape() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ShortArrayTape(int initialCapacity) {
+        this.cells = new short[Math.max(1, initialCapacity)];
+        this.size = 1;
+    }
+
+    @Override
+    public int get(int index) {
+        return cells[index] & 0xFFFF;
+    }
+
+    @Override
+    public void set(int index, int value) {
+        cells[index] = (short) value;
+    }
+
+    @Override
+    public void add(int index, int delta) {
+        cells[index] += delta;
+    }
+
+    @Override
+    public int cellBits() {
+        return 16;
+    }
+
+    @Override
+    public void ensure(int index) {
+        if (index >= size) {
+            extend(index);
+        }
+    }
+
+    private void extend(int index) {
+        if (index >= cells.length) {
+            if (index >= MAX_CAPACITY) {
+                throw new OutOfMemoryError("Tape cannot grow beyond " + MAX_CAPACITY + " cells");
+            }
+            long capacity = Math.max((long) cells.length * 2, (long) index + 1);
+            cells = Arrays.copyOf(cells, (int) Math.min(capacity, MAX_CAPACITY));
+        }
+        size = index + 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(cells, 0, size, (short) 0);
+        size = 1;
+    }
+}
@@ -0,0 +1,26 @@
+package org.example;
+
+public interface Tape extends AutoCloseable {
+    int get(int index);
+
+    void set(int index, int value);
+
+    default void add(int index, int delta) {
+        set(index, get(index) + delta);
+    }
+
+    // Narrower cells wrap modulo 2^bits and read back unsigned.
+    default int cellBits() {
+        return 32;
+    }
+
+    void ensure(int index);
+
+    int size();
+
+    void clear();
+
+    @Override
+    default void close() {
+    }
+}
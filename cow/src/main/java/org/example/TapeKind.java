@@ -0,0 +1,94 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+public enum TapeKind {
+    DENSE {
+        @Override
+        public Tape create() {
+            return new IntArrayTape();
+        }
+
+        @Override
+        public boolean supports(int cellBits) {
+            return cellBits == 8 || cellBits == 16 || cellBits == 32;
+        }
+
+        @Override
+        public Tape create(int cellBits) {
+            switch (cellBits) {
+                case 8:
+                    return new ByteArrayTape();
+                case 16:
+                    return new ShortArrayTape();
+                default:
+                    return super.create(cellBits);
+            }
+        }
+    },
+    PAGED {
+        @Override
+        public Tape create() {
+            return new PagedTape();
+        }
+    },
+    OFFHEAP {
+        @Override
+        public Tape create() {
+            return new OffHeapTape();
+        }
+    },
+    MAPPED {
+        @Override
+        public Tape create() {
+            try {
+                return OffHeapTape.mappedTemporary();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Tape create(int cellBits, Path file) {
+            if (file == null) {
+                return create(cellBits);
+            }
+            if (!supports(cellBits)) {
+                throw new IllegalArgumentException("The mapped tape does not support " + cellBits + "-bit cells");
+            }
+            try {
+                return OffHeapTape.mapped(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    public abstract Tape create();
+
+    public boolean supports(int cellBits) {
+        return cellBits == 32;
+    }
+
+    public Tape create(int cellBits) {
+        if (!supports(cellBits)) {
+            throw new IllegalArgumentException("The " + name().toLowerCase() + " tape does not support "
+                    + cellBits + "-bit cells");
+        }
+        return create();
+    }
+
+    // Only the mapped tape can be backed by a file of the caller's choosing.
+    public Tape create(int cellBits, Path file) {
+        if (file != null) {
+            throw new IllegalArgumentException("The " + name().toLowerCase() + " tape is not backed by a file");
+        }
+        return create(cellBits);
+    }
+
+    public static TapeKind fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
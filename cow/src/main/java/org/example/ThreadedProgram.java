@@ -0,0 +1,347 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class ThreadedProgram {
+    // Building and running the tree both recurse once per nested loop.
+    static final int MAX_LOOP_DEPTH = 1000;
+
+    private final Node root;
+
+    private ThreadedProgram(Node root) {
+        this.root = root;
+    }
+
+    static boolean canCompile(OptimizedProgram program) {
+        return program.loopDepth() <= MAX_LOOP_DEPTH;
+    }
+
+    static ThreadedProgram compile(OptimizedProgram program, int entry) {
+        return new ThreadedProgram(new Builder(program).block(entry, program.length()));
+    }
+
+    int run(CowExecution execution, Tape tape, int pointer) {
+        return root.execute(execution, tape, pointer);
+    }
+
+    private static final class Builder {
+        private final OptimizedProgram program;
+
+        Builder(OptimizedProgram program) {
+            this.program = program;
+        }
+
+        Node block(int from, int to) {
+            List<Node> nodes = new ArrayList<>();
+            int pc = from;
+            while (pc < to) {
+                int arg = program.args[pc];
+                switch (program.ops[pc]) {
+                    case Opcode.ADD:
+                        nodes.add(new Add(arg, program.offsets[pc], program.floors[pc]));
+                        pc++;
+                        break;
+                    case Opcode.MOVE:
+                        nodes.add(new Move(program.offsets[pc], program.floors[pc]));
+                        pc++;
+                        break;
+                    case Opcode.ENSURE:
+                        nodes.add(new Ensure(program.offsets[pc], program.floors[pc]));
+                        pc++;
+                        break;
+                    case Opcode.ZERO:
+                        if (arg >= 0) {
+                            nodes.add(new Clear(program.idioms[arg], program.sources[pc],
+                                    program.offsets[pc], program.floors[pc]));
+                        } else {
+                            nodes.add(new Zero(program.offsets[pc], program.floors[pc]));
+                        }
+                        pc++;
+                        break;
+                    case Opcode.SHIFT:
+                        nodes.add(new Shift(program.offsets[pc]));
+                        pc++;
+                        break;
+                    case Opcode.RANGE: {
+                        int end = program.args[arg];
+                        Node checked = block(pc + 1, arg);
+                        Node fast = new Loop(block(arg + 1, end), program.loopSpan(end), program.sources[end]);
+                        nodes.add(new Range(program.offsets[pc], program.floors[pc], checked, fast));
+                        pc = end + 1;
+                        break;
+                    }
+                    case Opcode.LOOP_START:
+                        nodes.add(new Loop(block(pc + 1, arg), program.loopSpan(arg), program.sources[arg]));
+                        pc = arg + 1;
+                        break;
+                    case Opcode.MULTIPLY: {
+                        LoopIdiom idiom = program.idioms[arg];
+                        if (idiom.exit == pc) {
+                            nodes.add(new Multiply(idiom, program.sources[pc]));
+                            pc++;
+                        } else {
+                            Node body = block(pc + 1, idiom.exit);
+                            Loop fallback = new Loop(body, program.loopSpan(idiom.exit), program.sources[idiom.exit]);
+                            nodes.add(new GuardedMultiply(idiom, program.sources[pc], fallback));
+                            pc = idiom.exit + 1;
+                        }
+                        break;
+                    }
+                    case Opcode.EXEC:
+                        nodes.add(new Exec());
+                        pc++;
+                        break;
+                    default:
+                        nodes.add(new Single(program.ops[pc]));
+                        pc++;
+                        break;
+                }
+            }
+            if (nodes.size() == 1) {
+                return nodes.get(0);
+            }
+            return new Block(nodes.toArray(new Node[0]));
+        }
+    }
+
+    abstract static class Node {
+        abstract int execute(CowExecution execution, Tape tape, int pointer);
+    }
+
+    private static final class Block extends Node {
+        private final Node[] nodes;
+
+        Block(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            for (Node node : nodes) {
+                pointer = node.execute(execution, tape, pointer);
+            }
+            return pointer;
+        }
+    }
+
+    private static final class Add extends Node {
+        private final int delta;
+        private final int offset;
+        private final int floor;
+
+        Add(int delta, int offset, int floor) {
+            this.delta = delta;
+            this.offset = offset;
+            this.floor = floor;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            tape.add(OptimizedProgram.cell(pointer, offset, floor), delta);
+            return pointer;
+        }
+    }
+
+    private static final class Move extends Node {
+        private final int offset;
+        private final int floor;
+
+        Move(int offset, int floor) {
+            this.offset = offset;
+            this.floor = floor;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            pointer = OptimizedProgram.cell(pointer, offset, floor);
+            tape.ensure(pointer);
+            return pointer;
+        }
+    }
+
+    private static final class Ensure extends Node {
+        private final int offset;
+        private final int floor;
+
+        Ensure(int offset, int floor) {
+            this.offset = offset;
+            this.floor = floor;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            tape.ensure(OptimizedProgram.cell(pointer, offset, floor));
+            return pointer;
+        }
+    }
+
+    private static final class Shift extends Node {
+        private final int offset;
+
+        Shift(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            return pointer + offset;
+        }
+    }
+
+    private static final class Range extends Node {
+        private final int lowest;
+        private final int reach;
+        private final Node checked;
+        private final Node fast;
+
+        Range(int lowest, int reach, Node checked, Node fast) {
+            this.lowest = lowest;
+            this.reach = reach;
+            this.checked = checked;
+            this.fast = fast;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            if (execution.metered || tape.get(pointer) == 0 || pointer + lowest < 0) {
+                return checked.execute(execution, tape, pointer);
+            }
+            tape.ensure(pointer + reach);
+            return fast.execute(execution, tape, pointer);
+        }
+    }
+
+    private static final class Zero extends Node {
+        private final int offset;
+        private final int floor;
+
+        Zero(int offset, int floor) {
+            this.offset = offset;
+            this.floor = floor;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            tape.set(OptimizedProgram.cell(pointer, offset, floor), 0);
+            return pointer;
+        }
+    }
+
+    private static final class Clear extends Node {
+        private final LoopIdiom idiom;
+        private final int source;
+        private final int offset;
+        private final int floor;
+
+        Clear(LoopIdiom idiom, int source, int offset, int floor) {
+            this.idiom = idiom;
+            this.source = source;
+            this.offset = offset;
+            this.floor = floor;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            int cell = OptimizedProgram.cell(pointer, offset, floor);
+            if (execution.metered) {
+                execution.runIdiom(idiom, cell, source);
+            } else {
+                tape.set(cell, 0);
+            }
+            return pointer;
+        }
+    }
+
+    private static final class Loop extends Node {
+        private final Node body;
+        private final int span;
+        private final int source;
+
+        Loop(Node body, int span, int source) {
+            this.body = body;
+            this.span = span;
+            this.source = source;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            while (tape.get(pointer) != 0) {
+                pointer = body.execute(execution, tape, pointer);
+                if (execution.metered && tape.get(pointer) != 0) {
+                    execution.setPointer(pointer);
+                    execution.charge(span, source);
+                }
+            }
+            return pointer;
+        }
+    }
+
+    private static final class Multiply extends Node {
+        private final LoopIdiom idiom;
+        private final int source;
+
+        Multiply(LoopIdiom idiom, int source) {
+            this.idiom = idiom;
+            this.source = source;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            if (execution.metered) {
+                execution.runIdiom(idiom, pointer, source);
+            } else if (tape.get(pointer) != 0) {
+                idiom.apply(tape, pointer);
+            }
+            return pointer;
+        }
+    }
+
+    private static final class GuardedMultiply extends Node {
+        private final LoopIdiom idiom;
+        private final int source;
+        private final Loop fallback;
+
+        GuardedMultiply(LoopIdiom idiom, int source, Loop fallback) {
+            this.idiom = idiom;
+            this.source = source;
+            this.fallback = fallback;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            if (tape.get(pointer) == 0) {
+                return pointer;
+            }
+            if (pointer + idiom.minOffset >= 0) {
+                if (execution.metered) {
+                    execution.runIdiom(idiom, pointer, source);
+                } else {
+                    idiom.apply(tape, pointer);
+                }
+                return pointer;
+            }
+            return fallback.execute(execution, tape, pointer);
+        }
+    }
+
+    private static final class Exec extends Node {
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            return execution.executeIndirect(pointer);
+        }
+    }
+
+    private static final class Single extends Node {
+        private final byte opcode;
+
+        Single(byte opcode) {
+            this.opcode = opcode;
+        }
+
+        @Override
+        int execute(CowExecution execution, Tape tape, int pointer) {
+            return execution.executeSingle(opcode, pointer);
+        }
+    }
+}
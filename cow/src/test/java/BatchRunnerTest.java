@@ -0,0 +1,92 @@
+import org.example.BatchRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("batch");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(directory.resolve(name), content.getBytes());
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(directory.resolve(name)));
+    }
+
+    @Test
+    public void testRunsDirectoryWithIsolatedInputAndOutput() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            write("p" + i + ".cow", "oom MoO OOM");
+            write("p" + i + ".in", String.valueOf(i));
+        }
+        write("bad.cow", "MOO MoO");
+
+        List<BatchRunner.Job> jobs = BatchRunner.discover(directory);
+        assertEquals(21, jobs.size());
+        List<BatchRunner.Result> results = new BatchRunner(4).run(jobs);
+
+        assertEquals(BatchRunner.Status.SYNTAX_ERROR, results.get(0).getStatus());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(String.valueOf(i + 1), read("p" + i + ".out"));
+        }
+        for (BatchRunner.Result result : results.subList(1, results.size())) {
+            assertEquals(BatchRunner.Status.OK, result.getStatus());
+            assertTrue(result.getNanos() > 0);
+        }
+    }
+
+    @Test
+    public void testManifestResolvesPathsAgainstItsDirectory() throws Exception {
+        write("echo.cow", "oom OOM");
+        write("data.txt", "42");
+        write("jobs.txt", "# comment\n\necho.cow data.txt result.txt\necho.cow -\n");
+
+        List<BatchRunner.Job> jobs = BatchRunner.discover(directory.resolve("jobs.txt"));
+        assertEquals(2, jobs.size());
+        assertNull(jobs.get(1).getInput());
+        assertEquals(directory.resolve("echo.out").toAbsolutePath(), jobs.get(1).getOutput());
+
+        new BatchRunner(1).run(jobs.subList(0, 1));
+        assertEquals("42", read("result.txt"));
+    }
+
+    @Test
+    public void testSummaryListsStatusAndTotals() throws Exception {
+        write("ok.cow", "MoO OOM");
+        write("missing.txt", "absent.cow\n");
+        List<BatchRunner.Job> jobs = BatchRunner.discover(directory);
+        jobs.addAll(BatchRunner.discover(directory.resolve("missing.txt")));
+
+        StringWriter summary = new StringWriter();
+        BatchRunner.writeSummary(new BatchRunner(2).run(jobs), summary);
+        String[] lines = summary.toString().split("\n");
+
+        assertEquals("status\ttime_ms\tprogram\tdetail", lines[0].trim());
+        assertTrue(lines[1].startsWith("OK\t"));
+        assertTrue(lines[2].startsWith("IO_ERROR\t"));
+        assertTrue(lines[3].startsWith("# 2 programs, 1 failed"));
+    }
+}
@@ -0,0 +1,139 @@
+import org.example.BytecodeCompiler;
+import org.example.CompiledCowProgram;
+import org.example.CowExecution;
+import org.example.CowInput;
+import org.example.CowInterpreter;
+import org.example.CowOutput;
+import org.example.ExecutionMode;
+import org.example.IntArrayTape;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BytecodeCompilerTest {
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(BytecodeCompiler.isAvailable());
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @After
+    public void restoreStreams() {
+        System.setOut(originalOut);
+    }
+
+    private String run(String filename, ExecutionMode mode) throws IOException {
+        outContent.reset();
+        CowInterpreter interpreter = new CowInterpreter();
+        interpreter.setExecutionMode(mode);
+        interpreter.loadProgram(filename);
+        interpreter.execute();
+        interpreter.close();
+        return outContent.toString();
+    }
+
+    private String runSource(String source, ExecutionMode mode) throws IOException {
+        Path file = Files.createTempFile("bytecode", ".cow");
+        try {
+            Files.write(file, source.getBytes());
+            return run(file.toString(), mode);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String runInput(String source, ExecutionMode mode, String input) {
+        StringBuilder sink = new StringBuilder();
+        CowExecution execution = CompiledCowProgram.compile(source.getBytes()).newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(input.getBytes())), CowOutput.toAppendable(sink));
+        execution.setExecutionMode(mode);
+        execution.run();
+        return sink.toString();
+    }
+
+    private static String repeat(String text, int count) {
+        return String.join("", Collections.nCopies(count, text));
+    }
+
+    @Test
+    public void testHelloAndFibMatchInterpreter() throws IOException {
+        assertEquals("Hello, World!", run("hello.cow", ExecutionMode.BYTECODE));
+        assertEquals(run("fib.cow", ExecutionMode.OPCODE), run("fib.cow", ExecutionMode.BYTECODE));
+    }
+
+    @Test
+    public void testIndirectExecuteUsesDispatchStub() throws IOException {
+        String source = "OOM MoO MoO MoO MoO MoO MoO moO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO mOo mOO mOo OOM";
+        assertEquals("07", runSource(source, ExecutionMode.BYTECODE));
+    }
+
+    @Test
+    public void testGuardedMultiplyLoopFallsBack() throws IOException {
+        String source = "MoO MoO MOO MOo mOo MoO moO moo OOM moO OOM";
+        assertEquals(runSource(source, ExecutionMode.OPCODE), runSource(source, ExecutionMode.BYTECODE));
+    }
+
+    @Test
+    public void testLargeProgramIsSplitIntoMethods() throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            source.append("MoO moO MoO MoO MOO MOo mOo MoO moO moo mOo OOM moO ");
+        }
+        source.append("MOO ");
+        for (int i = 0; i < 400; i++) {
+            source.append("MoO moO OOM mOo ");
+        }
+        source.append("OOO moo");
+        assertEquals(runSource(source.toString(), ExecutionMode.OPCODE),
+                runSource(source.toString(), ExecutionMode.BYTECODE));
+    }
+
+    @Test
+    public void testDeeplyNestedProgramFallsBackToInterpreter() throws IOException {
+        StringBuilder source = new StringBuilder("oom MoO OOM ");
+        for (int i = 0; i < 3000; i++) {
+            source.append("MOO ");
+        }
+        source.append("MOo");
+        for (int i = 0; i < 3000; i++) {
+            source.append(" moo");
+        }
+        source.append(" OOM");
+        assertEquals("10", runSource(source.toString(), ExecutionMode.BYTECODE));
+    }
+
+    @Test
+    public void testWideIdiomsAreSplitAcrossMethods() {
+        String loop = "MoO MoO MOO MOo " + repeat("moO MoO ", 200) + repeat("mOo ", 200) + "moo ";
+        String source = "oom " + repeat(loop, 200) + "moO OOM";
+        assertEquals(runInput(source, ExecutionMode.OPCODE, "3"), runInput(source, ExecutionMode.BYTECODE, "3"));
+    }
+
+    @Test
+    public void testIdiomTooLargeForOneMethodFallsBack() {
+        String source = "oom MOO MOo " + repeat("moO MoO ", 6000) + repeat("mOo ", 6000) + "moo " + repeat("moO ", 6000) + "OOM";
+        assertEquals("3", runInput(source, ExecutionMode.BYTECODE, "3"));
+    }
+
+    @Test
+    public void testManyIndirectSitesAreSplitAcrossMethods() {
+        String source = "oom " + repeat("mOO ", 5000) + "OOM";
+        assertNotNull(BytecodeCompiler.compile(CompiledCowProgram.compile(source.getBytes()).getOptimizedProgram()));
+        String expected = runInput(source, ExecutionMode.OPCODE, "2");
+        assertEquals(expected, runInput(source, ExecutionMode.BYTECODE, "2"));
+    }
+}
@@ -0,0 +1,235 @@
+import org.example.BytecodeCompiler;
+import org.example.CompiledCowProgram;
+import org.example.CowExecution;
+import org.example.CowInput;
+import org.example.CowLimitExceededException;
+import org.example.CowOutput;
+import org.example.ExecutionMode;
+import org.example.FlushPolicy;
+import org.example.IntArrayTape;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CompiledCowProgramTest {
+    private static final String DOUBLE = "oom MOO moO MoO MoO mOo MOo moo moO OOM";
+
+    private static final String BANNER = "MoO MoO MoO MOO OOM MOo moo oom OOM";
+
+    private static final class CountingTape extends IntArrayTape {
+        int writes;
+
+        @Override
+        public void set(int index, int value) {
+            writes++;
+            super.set(index, value);
+        }
+
+        @Override
+        public void add(int index, int delta) {
+            writes++;
+            super.add(index, delta);
+        }
+    }
+
+    private static String run(CompiledCowProgram program, ExecutionMode mode, String input) {
+        StringBuilder sink = new StringBuilder();
+        CowExecution execution = program.newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(input.getBytes())), CowOutput.toAppendable(sink));
+        execution.setExecutionMode(mode);
+        execution.run();
+        return sink.toString();
+    }
+
+    @Test
+    public void testExecutionsKeepSeparateState() {
+        CompiledCowProgram program = CompiledCowProgram.compile("oom MMM moO MMM OOM".getBytes());
+        StringBuilder sink = new StringBuilder();
+        CowExecution first = program.newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream("5".getBytes())), CowOutput.toAppendable(sink));
+        CowExecution second = program.newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream("9".getBytes())), CowOutput.toAppendable(sink));
+
+        first.run();
+        second.run();
+
+        assertEquals("59", sink.toString());
+        assertEquals(1, first.getPointer());
+        assertNull(first.getRegister());
+        assertEquals(5, first.getTape().get(1));
+        assertEquals(9, second.getTape().get(1));
+    }
+
+    @Test
+    public void testSharedProgramRunsConcurrently() throws Exception {
+        CompiledCowProgram program = CompiledCowProgram.compile(DOUBLE.getBytes());
+        List<ExecutionMode> modes = new ArrayList<>();
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode != ExecutionMode.BYTECODE || BytecodeCompiler.isAvailable()) {
+                modes.add(mode);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                ExecutionMode mode = modes.get(i % modes.size());
+                String input = String.valueOf(i);
+                results.add(executor.submit(() -> run(program, mode, input)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(String.valueOf(2 * i), results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInputFreePrefixIsPrecomputed() {
+        CompiledCowProgram program = CompiledCowProgram.compile(BANNER.getBytes());
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+                continue;
+            }
+            assertEquals(mode.toString(), "32142", run(program, mode, "42"));
+        }
+
+        CountingTape tape = new CountingTape();
+        CowExecution execution = program.newExecution(tape,
+                new CowInput(new ByteArrayInputStream("7".getBytes())), CowOutput.toAppendable(new StringBuilder()));
+        execution.run();
+        assertEquals(1, tape.writes);
+        assertEquals(7, tape.get(0));
+
+        CountingTape full = new CountingTape();
+        execution = program.newExecution(full,
+                new CowInput(new ByteArrayInputStream("7".getBytes())), CowOutput.toAppendable(new StringBuilder()));
+        execution.setPrefixEnabled(false);
+        execution.run();
+        assertTrue(full.writes > 1);
+        assertEquals(7, full.get(0));
+    }
+
+    @Test
+    public void testPrefixOutputIsReplayedInTheRunCharset() {
+        String source = String.join(" ", Collections.nCopies(0x416, "MoO")) + " Moo oom";
+        CompiledCowProgram program = CompiledCowProgram.compile(source.getBytes());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CowExecution execution = program.newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])),
+                new CowOutput(bytes, FlushPolicy.BUFFERED, Charset.forName("windows-1251")));
+        execution.run();
+        assertArrayEquals(new byte[]{(byte) 0xC6}, bytes.toByteArray());
+    }
+
+    @Test
+    public void testPrefixOfEndlessProgramIsBounded() {
+        CompiledCowProgram program = CompiledCowProgram.compile("MoO OOM MOO moO MoO mOo moo".getBytes());
+        program.prepare(ExecutionMode.THREADED);
+        StringBuilder sink = new StringBuilder();
+        CowExecution execution = program.newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])), CowOutput.toAppendable(sink));
+        execution.setStepLimit(100);
+        try {
+            execution.run();
+            fail();
+        } catch (CowLimitExceededException expected) {
+        }
+        assertEquals("1", sink.toString());
+        assertEquals(2, execution.getTape().size());
+    }
+
+    @Test
+    public void testPrepareWithoutPrefixRunsFromStart() {
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.OPTIMIZED, ExecutionMode.THREADED}) {
+            CompiledCowProgram program = CompiledCowProgram.compile("MoO MoO OOM oom OOM".getBytes());
+            program.prepare(mode, false);
+            StringBuilder sink = new StringBuilder();
+            CowExecution execution = program.newExecution(new IntArrayTape(),
+                    new CowInput(new ByteArrayInputStream("5\n".getBytes())), CowOutput.toAppendable(sink));
+            execution.setExecutionMode(mode);
+            execution.setPrefixEnabled(false);
+            execution.run();
+            assertEquals("25", sink.toString());
+        }
+    }
+
+    @Test
+    public void testPrefixStopsGrowingTheTape() {
+        String source = "MoO MOO " + String.join(" ", Collections.nCopies(2000, "moO")) + " MoO moo";
+        CompiledCowProgram program = CompiledCowProgram.compile(source.getBytes());
+        program.prepare(ExecutionMode.OPTIMIZED);
+        CowExecution execution = program.newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])), CowOutput.toAppendable(new StringBuilder()));
+        execution.setMaxTapeSize(100000);
+        try {
+            execution.run();
+            fail();
+        } catch (CowLimitExceededException expected) {
+        }
+        assertTrue(execution.getTape().size() <= 100000 + 2001);
+    }
+
+    @Test
+    public void testPrefixCutInsideLoopResumesInEveryEngine() {
+        String counter = String.join(" ", Collections.nCopies(64, "MoO"));
+        String source = counter + " MOO moO " + counter + " MOO moO " + counter
+                + " MOO moO MoO MMM MMM mOo MOo moo mOo MOo moo mOo MOo moo moO moO moO OOM";
+        CompiledCowProgram program = CompiledCowProgram.compile(source.getBytes());
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+                continue;
+            }
+            assertEquals(mode.toString(), "262144", run(program, mode, ""));
+        }
+    }
+
+    @Test
+    public void testMeteredRunsResumeBeforeUncheckedLoopCopy() {
+        String right = String.join(" ", Collections.nCopies(2000, "moO"));
+        String left = String.join(" ", Collections.nCopies(2000, "mOo"));
+        String source = "MoO MoO MOO moO oom MOO " + right + " MoO MMM MMM " + left
+                + " MOo moo mOo MOo moo " + right + " moO OOM";
+        CompiledCowProgram program = CompiledCowProgram.compile(source.getBytes());
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+                continue;
+            }
+            StringBuilder sink = new StringBuilder();
+            CowExecution execution = program.newExecution(new IntArrayTape(),
+                    new CowInput(new ByteArrayInputStream("3 3".getBytes())), CowOutput.toAppendable(sink));
+            execution.setExecutionMode(mode);
+            execution.setStepLimit(100000000);
+            execution.run();
+            assertEquals(mode.toString(), "6", sink.toString());
+        }
+    }
+
+    @Test
+    public void testIndirectTargetsMatchOpcodeEngine() {
+        CompiledCowProgram program = CompiledCowProgram.compile(
+                "oom mOO OOM MMM moO mOO OOM mOo mOO OOM MoO MOo moO mOo OOO MMM OOM".getBytes());
+        for (int target = -1; target <= 17; target++) {
+            String input = Integer.toString(target);
+            String expected = run(program, ExecutionMode.OPCODE, input);
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+                    continue;
+                }
+                assertEquals(mode + " " + target, expected, run(program, mode, input));
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import org.example.ByteArrayTape;
+import org.example.BytecodeCompiler;
+import org.example.CompiledCowProgram;
+import org.example.CowCheckpoint;
+import org.example.CowCheckpointException;
+import org.example.CowExecution;
+import org.example.CowInput;
+import org.example.CowLimitExceededException;
+import org.example.CowOutput;
+import org.example.ExecutionMode;
+import org.example.IntArrayTape;
+import org.example.PagedTape;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class CowCheckpointTest {
+    private static final String SUM = "oom MOO MOO MOo moO MoO mOo moo oom moo moO OOM";
+    private static final String INPUT = "5 7 9 0";
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("checkpoint", ".bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static CowExecution execution(CompiledCowProgram program, ExecutionMode mode, StringBuilder sink) {
+        CowExecution execution = program.newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(INPUT.getBytes())), CowOutput.toAppendable(sink));
+        execution.setExecutionMode(mode);
+        return execution;
+    }
+
+    @Test
+    public void testResumeAfterInterruptionMatchesFullRun() throws IOException {
+        CompiledCowProgram program = CompiledCowProgram.compile(SUM.getBytes());
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+                continue;
+            }
+            CowExecution interrupted = execution(program, mode, new StringBuilder());
+            interrupted.setCheckpointing(file, 1);
+            interrupted.setStepLimit(10);
+            try {
+                interrupted.run();
+                fail(mode + " was not interrupted");
+            } catch (CowLimitExceededException expected) {
+            }
+
+            CowCheckpoint checkpoint = CowCheckpoint.read(file);
+            assertTrue(checkpoint.getInputOffset() > 0);
+
+            StringBuilder sink = new StringBuilder();
+            CowExecution resumed = execution(program, mode, sink);
+            resumed.resume(checkpoint);
+            assertEquals(mode.toString(), "21", sink.toString());
+        }
+    }
+
+    @Test
+    public void testCheckpointInsideIdiomLoopResumes() throws IOException {
+        CompiledCowProgram program = CompiledCowProgram.compile("oom MOO moO MoO MoO mOo MOo moo moO OOM".getBytes());
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+                continue;
+            }
+            CowExecution interrupted = execution(program, mode, new StringBuilder());
+            interrupted.setCheckpointing(file, 7);
+            interrupted.setStepLimit(20);
+            try {
+                interrupted.run();
+                fail(mode + " was not interrupted");
+            } catch (CowLimitExceededException expected) {
+            }
+
+            CowCheckpoint checkpoint = CowCheckpoint.read(file);
+            assertEquals(mode.toString(), 7, checkpoint.getPc());
+            assertEquals(mode.toString(), 14, checkpoint.getSteps());
+
+            StringBuilder sink = new StringBuilder();
+            CowExecution resumed = execution(program, mode, sink);
+            resumed.resume(checkpoint);
+            assertEquals(mode.toString(), "10", sink.toString());
+        }
+    }
+
+    @Test
+    public void testCheckpointRoundTripsState() throws IOException {
+        CompiledCowProgram program = CompiledCowProgram.compile("MoO MMM moO MoO MOO moo".getBytes());
+        CowExecution execution = program.newExecution(new PagedTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])), CowOutput.toAppendable(new StringBuilder()));
+        execution.setCheckpointing(file, 1);
+        execution.setStepLimit(5);
+        try {
+            execution.run();
+            fail();
+        } catch (CowLimitExceededException expected) {
+        }
+
+        CowCheckpoint checkpoint = CowCheckpoint.read(file);
+        assertEquals(5, checkpoint.getPc());
+        assertEquals(4, checkpoint.getSteps());
+        assertEquals(2, checkpoint.getTapeSize());
+
+        IntArrayTape tape = new IntArrayTape();
+        CowExecution restored = program.newExecution(tape,
+                new CowInput(new ByteArrayInputStream(new byte[0])), CowOutput.toAppendable(new StringBuilder()));
+        restored.setStepLimit(6);
+        try {
+            restored.resume(checkpoint);
+            fail();
+        } catch (CowLimitExceededException e) {
+            assertEquals(8, e.getSteps());
+        }
+        assertEquals(1, tape.get(0));
+        assertEquals(1, tape.get(1));
+        assertEquals(Integer.valueOf(1), restored.getRegister());
+        assertEquals(1, restored.getPointer());
+    }
+
+    @Test(expected = CowCheckpointException.class)
+    public void testRejectsCheckpointFromAnotherProgram() throws IOException {
+        CompiledCowProgram program = CompiledCowProgram.compile(SUM.getBytes());
+        CowExecution interrupted = execution(program, ExecutionMode.OPCODE, new StringBuilder());
+        interrupted.setCheckpointing(file, 1);
+        interrupted.setStepLimit(10);
+        try {
+            interrupted.run();
+        } catch (CowLimitExceededException expected) {
+        }
+
+        CompiledCowProgram other = CompiledCowProgram.compile((SUM + " OOM").getBytes());
+        execution(other, ExecutionMode.OPCODE, new StringBuilder()).resume(CowCheckpoint.read(file));
+    }
+
+    @Test
+    public void testRejectsCheckpointWithAnotherCellWidth() throws IOException {
+        CompiledCowProgram program = CompiledCowProgram.compile(SUM.getBytes());
+        CowExecution interrupted = execution(program, ExecutionMode.OPCODE, new StringBuilder());
+        interrupted.setCheckpointing(file, 1);
+        interrupted.setStepLimit(10);
+        try {
+            interrupted.run();
+        } catch (CowLimitExceededException expected) {
+        }
+
+        CowCheckpoint checkpoint = CowCheckpoint.read(file);
+        assertEquals(32, checkpoint.getCellBits());
+        CowExecution narrow = program.newExecution(new ByteArrayTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])), CowOutput.toAppendable(new StringBuilder()));
+        try {
+            narrow.resume(checkpoint);
+            fail();
+        } catch (CowCheckpointException expected) {
+        }
+    }
+}
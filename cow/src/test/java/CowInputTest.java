@@ -0,0 +1,110 @@
+import org.example.CowInput;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class CowInputTest {
+
+    private static CowInput input(String text, int bufferSize) {
+        return new CowInput(new ByteArrayInputStream(text.getBytes()), bufferSize);
+    }
+
+    @Test
+    public void testReadsIntegersSeparatedByWhitespace() throws IOException {
+        CowInput in = input("  42\n-7\t+3 2147483647 -2147483648", 64);
+        assertEquals(42, in.readInt());
+        assertEquals(-7, in.readInt());
+        assertEquals(3, in.readInt());
+        assertEquals(Integer.MAX_VALUE, in.readInt());
+        assertEquals(Integer.MIN_VALUE, in.readInt());
+        assertEquals(0, in.readInt());
+    }
+
+    @Test
+    public void testInvalidTokenIsNotConsumed() throws IOException {
+        CowInput in = input("abc 5", 64);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+        assertEquals('a', in.readByte());
+    }
+
+    @Test
+    public void testOverflowingTokenReadsAsZero() throws IOException {
+        CowInput in = input("99999999999 1", 64);
+        assertEquals(0, in.readInt());
+    }
+
+    @Test
+    public void testIntegerAndBytesShareOneStream() throws IOException {
+        CowInput in = input("12\nA", 64);
+        assertEquals(12, in.readInt());
+        assertEquals('\n', in.readByte());
+        assertEquals('A', in.readByte());
+        assertEquals(-1, in.readByte());
+    }
+
+    @Test
+    public void testTokenSpanningBufferRefill() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append(i * 7919).append(' ');
+        }
+        CowInput in = input(text.toString(), 40);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 7919, in.readInt());
+        }
+    }
+
+    @Test
+    public void testDoesNotWaitForMoreInputAfterDelimiter() throws IOException {
+        InputStream oneChunk = new InputStream() {
+            private final byte[] data = "42\n".getBytes();
+            private int pos;
+
+            @Override
+            public int read() {
+                throw new AssertionError("unbuffered read");
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos == data.length) {
+                    throw new AssertionError("read past the available line");
+                }
+                int n = Math.min(len, data.length - pos);
+                System.arraycopy(data, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+        };
+        assertEquals(42, new CowInput(oneChunk).readInt());
+    }
+
+    @Test
+    public void testOffsetTracksConsumedBytesAcrossRefills() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append(i).append(' ');
+        }
+        CowInput in = input(text.toString(), 1);
+        for (int i = 0; i < 60; i++) {
+            assertEquals(i, in.readInt());
+        }
+        long offset = in.getOffset();
+        assertEquals(text.indexOf(" 59 ") + 3, offset);
+
+        CowInput resumed = input(text.toString(), 1);
+        assertEquals(offset, resumed.skip(offset));
+        assertEquals(offset, resumed.getOffset());
+        assertEquals(60, resumed.readInt());
+        assertEquals(' ', resumed.readByte());
+        assertEquals('6', resumed.readByte());
+        long position = resumed.getOffset();
+        assertEquals(text.length() - position, resumed.skip(Long.MAX_VALUE));
+        assertEquals(text.length(), resumed.getOffset());
+    }
+}
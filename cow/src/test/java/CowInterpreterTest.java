@@ -1,4 +1,8 @@
 import org.example.CowInterpreter;
+import org.example.CowOutput;
+import org.example.CowSyntaxException;
+import org.example.ExecutionMode;
+import org.example.IntArrayTape;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -326,4 +330,122 @@ public class CowInterpreterTest {
         interpreter.close();
     }
 
+    @Test
+    public void testReferenceModeMatchesOpcodeMode() throws IOException {
+        CowInterpreter interpreter = new CowInterpreter();
+        interpreter.setExecutionMode(ExecutionMode.OPCODE);
+        interpreter.loadProgram("fib.cow");
+        interpreter.execute();
+        String opcodeOutput = getOutput();
+        outContent.reset();
+        interpreter.setExecutionMode(ExecutionMode.REFERENCE);
+        interpreter.execute();
+        assertEquals(opcodeOutput, getOutput());
+        interpreter.close();
+    }
+
+    @Test
+    public void testReferenceModeExecuteInstruction() throws IOException {
+        Files.write(Paths.get("test_reference_exec.cow"), "OOM MoO MoO MoO MoO MoO MoO moO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO MoO mOo mOO mOo OOM".getBytes());
+        CowInterpreter interpreter = new CowInterpreter();
+        interpreter.setExecutionMode(ExecutionMode.REFERENCE);
+        interpreter.loadProgram("test_reference_exec.cow");
+        interpreter.execute();
+        assertEquals("07", getOutput());
+        Files.deleteIfExists(Paths.get("test_reference_exec.cow"));
+        interpreter.close();
+    }
+
+    @Test
+    public void testUnmatchedLoopEndRejectedAtLoad() throws IOException {
+        Files.write(Paths.get("test_unmatched_end.cow"), "MoO moo OOM".getBytes());
+        CowInterpreter interpreter = new CowInterpreter();
+        try {
+            interpreter.loadProgram("test_unmatched_end.cow");
+            fail("Expected CowSyntaxException");
+        } catch (CowSyntaxException e) {
+            assertEquals(1, e.getPosition());
+        } finally {
+            Files.deleteIfExists(Paths.get("test_unmatched_end.cow"));
+            interpreter.close();
+        }
+    }
+
+    @Test
+    public void testUnmatchedLoopStartRejectedAtLoad() throws IOException {
+        Files.write(Paths.get("test_unmatched_start.cow"), "MOO MOO MOo moo OOM".getBytes());
+        CowInterpreter interpreter = new CowInterpreter();
+        try {
+            interpreter.loadProgram("test_unmatched_start.cow");
+            fail("Expected CowSyntaxException");
+        } catch (CowSyntaxException e) {
+            assertEquals(0, e.getPosition());
+        } finally {
+            Files.deleteIfExists(Paths.get("test_unmatched_start.cow"));
+            interpreter.close();
+        }
+    }
+
+    @Test
+    public void testDeeplyNestedLoops() throws IOException {
+        StringBuilder program = new StringBuilder("MoO MoO ");
+        for (int i = 0; i < 40; i++) {
+            program.append("MOO ");
+        }
+        program.append("MOo ");
+        for (int i = 0; i < 40; i++) {
+            program.append("moo ");
+        }
+        program.append("OOM");
+        Files.write(Paths.get("test_deep_nested.cow"), program.toString().getBytes());
+        CowInterpreter interpreter = new CowInterpreter();
+        interpreter.loadProgram("test_deep_nested.cow");
+        interpreter.execute();
+        assertEquals("0", getOutput());
+        Files.deleteIfExists(Paths.get("test_deep_nested.cow"));
+        interpreter.close();
+    }
+
+    @Test
+    public void testLongRightSweepUsesTape() throws IOException {
+        StringBuilder program = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            program.append("moO ");
+        }
+        program.append("MoO MoO OOM");
+        Files.write(Paths.get("test_sweep.cow"), program.toString().getBytes());
+        IntArrayTape tape = new IntArrayTape(8);
+        CowInterpreter interpreter = new CowInterpreter(tape);
+        interpreter.loadProgram("test_sweep.cow");
+        interpreter.execute();
+        assertEquals("2", getOutput());
+        assertEquals(5001, tape.size());
+        assertEquals(2, tape.get(5000));
+        Files.deleteIfExists(Paths.get("test_sweep.cow"));
+        interpreter.close();
+    }
+
+    @Test
+    public void testCustomOutputSink() throws IOException {
+        StringBuilder sink = new StringBuilder();
+        CowInterpreter interpreter = new CowInterpreter(new IntArrayTape(), CowOutput.toAppendable(sink));
+        interpreter.loadProgram("hello.cow");
+        interpreter.execute();
+        assertEquals("Hello, World!", sink.toString());
+        assertEquals("", getOutput());
+        interpreter.close();
+    }
+
+    @Test
+    public void testOomAndMooReadTheSameStream() throws IOException {
+        Files.write(Paths.get("test_mixed_input.cow"), "oom OOM moO Moo OOM moO Moo OOM".getBytes());
+        setInput("12\nA");
+        CowInterpreter interpreter = new CowInterpreter();
+        interpreter.loadProgram("test_mixed_input.cow");
+        interpreter.execute();
+        assertEquals("121065", getOutput());
+        Files.deleteIfExists(Paths.get("test_mixed_input.cow"));
+        interpreter.close();
+    }
+
 }
@@ -0,0 +1,247 @@
+import org.example.BytecodeCompiler;
+import org.example.CowInterpreter;
+import org.example.CowOptimizer;
+import org.example.ExecutionMode;
+import org.example.Opcode;
+import org.example.OptimizedProgram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class CowOptimizerTest {
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    private final PrintStream originalOut = System.out;
+
+    @Before
+    public void setUpStreams() {
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @After
+    public void restoreStreams() {
+        System.setOut(originalOut);
+    }
+
+    private static byte[] compile(String... mnemonics) {
+        byte[] code = new byte[mnemonics.length];
+        for (int i = 0; i < mnemonics.length; i++) {
+            code[i] = Opcode.fromMnemonic(mnemonics[i]);
+        }
+        return code;
+    }
+
+    private String run(String filename, ExecutionMode mode) throws IOException {
+        outContent.reset();
+        CowInterpreter interpreter = new CowInterpreter();
+        interpreter.setExecutionMode(mode);
+        interpreter.loadProgram(filename);
+        interpreter.execute();
+        interpreter.close();
+        return outContent.toString();
+    }
+
+    private String runSource(String source, ExecutionMode mode) throws IOException {
+        Path file = Files.createTempFile("optimizer", ".cow");
+        try {
+            Files.write(file, source.getBytes());
+            return run(file.toString(), mode);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testFoldsIncrementRunsIntoSingleAdd() {
+        OptimizedProgram program = CowOptimizer.optimize(compile("MoO", "MoO", "MoO", "MOo", "OOM"));
+        assertEquals(2, program.length());
+        assertEquals(Opcode.ADD, program.op(0));
+        assertEquals(2, program.arg(0));
+        assertEquals(Opcode.PRINT_INT, program.op(1));
+    }
+
+    @Test
+    public void testCancellingRunIsDropped() {
+        OptimizedProgram program = CowOptimizer.optimize(compile("MoO", "MOo", "OOM"));
+        assertEquals(1, program.length());
+        assertEquals(Opcode.PRINT_INT, program.op(0));
+    }
+
+    @Test
+    public void testMoveRunCollapsesIntoOneClampedMove() {
+        OptimizedProgram program = CowOptimizer.optimize(compile("moO", "moO", "mOo", "mOo", "mOo"));
+        assertEquals(2, program.length());
+        assertEquals(Opcode.ENSURE, program.op(0));
+        assertEquals(2, program.offset(0));
+        assertEquals(Opcode.MOVE, program.op(1));
+        assertEquals(-1, program.offset(1));
+        assertEquals(0, program.floor(1));
+    }
+
+    @Test
+    public void testWritesBetweenMovesUseOffsets() {
+        OptimizedProgram program = CowOptimizer.optimize(
+                compile("moO", "moO", "moO", "MoO", "MoO", "mOo", "mOo", "mOo", "MOo", "OOM"));
+        assertEquals(4, program.length());
+        assertEquals(Opcode.ENSURE, program.op(0));
+        assertEquals(Opcode.ADD, program.op(1));
+        assertEquals(2, program.arg(1));
+        assertEquals(3, program.offset(1));
+        assertEquals(Opcode.ADD, program.op(2));
+        assertEquals(-1, program.arg(2));
+        assertEquals(0, program.offset(2));
+        assertEquals(Opcode.PRINT_INT, program.op(3));
+    }
+
+    @Test
+    public void testOffsetWritesKeepClampingAtCellZero() throws IOException {
+        String source = "mOo mOo MoO moO MoO MoO moO OOM mOo OOM mOo OOM";
+        OptimizedProgram program = CowOptimizer.optimize(compile(source.split(" ")));
+        assertEquals(-1, program.offset(2));
+        assertEquals(1, program.floor(2));
+        assertEquals(Opcode.MOVE, program.op(3));
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.OPCODE, ExecutionMode.OPTIMIZED, ExecutionMode.THREADED}) {
+            assertEquals("021", runSource(source, mode));
+        }
+    }
+
+    @Test
+    public void testLoopTargetsPointAtPartner() {
+        OptimizedProgram program = CowOptimizer.optimize(compile("MoO", "MoO", "MOO", "OOM", "MOo", "moo"));
+        assertEquals(Opcode.LOOP_START, program.op(1));
+        assertEquals(4, program.arg(1));
+        assertEquals(Opcode.LOOP_END, program.op(4));
+        assertEquals(1, program.arg(4));
+    }
+
+    @Test
+    public void testReducesHelloInstructionCount() throws IOException {
+        CowInterpreter interpreter = new CowInterpreter();
+        interpreter.loadProgram("hello.cow");
+        int instructionCount = interpreter.getInstructionCount();
+        int optimizedLength = interpreter.getOptimizedProgram().length();
+        interpreter.close();
+        assertTrue(optimizedLength * 3 < instructionCount);
+    }
+
+    @Test
+    public void testOptimizedOutputMatchesOpcodeEngine() throws IOException {
+        assertEquals(run("hello.cow", ExecutionMode.OPCODE), run("hello.cow", ExecutionMode.OPTIMIZED));
+        assertEquals(run("fib.cow", ExecutionMode.OPCODE), run("fib.cow", ExecutionMode.OPTIMIZED));
+    }
+
+    @Test
+    public void testClearLoopBecomesZero() {
+        OptimizedProgram program = CowOptimizer.optimize(compile("MoO", "MOO", "MOo", "moo", "OOM"));
+        assertEquals(3, program.length());
+        assertEquals(Opcode.ZERO, program.op(1));
+    }
+
+    @Test
+    public void testClearLoopOnNegativeCell() throws IOException {
+        assertEquals("0", runSource("MOo MOo MOO MOo moo OOM", ExecutionMode.OPTIMIZED));
+    }
+
+    @Test
+    public void testMultiplyLoopIsRecognized() throws IOException {
+        String source = "MoO MoO MoO MOO MOo moO MoO MoO moO MoO mOo mOo moo moO OOM moO OOM";
+        OptimizedProgram program = CowOptimizer.optimize(compile(source.split(" ")));
+        assertEquals(Opcode.MULTIPLY, program.op(1));
+        assertEquals(runSource(source, ExecutionMode.OPCODE), runSource(source, ExecutionMode.OPTIMIZED));
+        assertEquals("63", runSource(source, ExecutionMode.OPTIMIZED));
+    }
+
+    @Test
+    public void testMultiplyLoopWithOddCounterStep() throws IOException {
+        assertEquals("-1431655765", runSource("MoO MOO MOo MOo MOo moO MoO mOo moo moO OOM", ExecutionMode.OPTIMIZED));
+    }
+
+    @Test
+    public void testLeftwardLoopFallsBackWhenPointerWouldClamp() throws IOException {
+        String source = "MoO MoO MOO MOo mOo MoO moO moo OOM moO OOM";
+        assertEquals(runSource(source, ExecutionMode.OPCODE), runSource(source, ExecutionMode.OPTIMIZED));
+    }
+
+    @Test
+    public void testLeftwardLoopUsesIdiomAwayFromCellZero() throws IOException {
+        String source = "moO MoO MoO MOO MOo mOo MoO MoO MoO moO moo mOo OOM";
+        assertEquals("6", runSource(source, ExecutionMode.OPTIMIZED));
+        assertEquals(runSource(source, ExecutionMode.OPCODE), runSource(source, ExecutionMode.OPTIMIZED));
+    }
+
+    @Test
+    public void testThreadedOutputMatchesOpcodeEngine() throws IOException {
+        assertEquals(run("hello.cow", ExecutionMode.OPCODE), run("hello.cow", ExecutionMode.THREADED));
+        assertEquals(run("fib.cow", ExecutionMode.OPCODE), run("fib.cow", ExecutionMode.THREADED));
+        String source = "MoO MoO MOO MOo mOo MoO moO moo OOM moO OOM";
+        assertEquals(runSource(source, ExecutionMode.OPCODE), runSource(source, ExecutionMode.THREADED));
+        assertEquals("6", runSource("moO MoO MoO MOO MOo mOo MoO MoO MoO moO moo mOo OOM", ExecutionMode.THREADED));
+    }
+
+    @Test
+    public void testDeeplyNestedProgramFallsBackFromThreaded() throws IOException {
+        StringBuilder source = new StringBuilder("oom MoO OOM ");
+        for (int i = 0; i < 20000; i++) {
+            source.append("MOO ");
+        }
+        source.append("MOo");
+        for (int i = 0; i < 20000; i++) {
+            source.append(" moo");
+        }
+        source.append(" OOM");
+        assertEquals("10", runSource(source.toString(), ExecutionMode.THREADED));
+    }
+
+    @Test
+    public void testBalancedLoopGetsUncheckedCopy() {
+        OptimizedProgram program = CowOptimizer.optimize(
+                compile("MoO MOO moO MoO MMM MMM mOo MOo moo OOM".split(" ")));
+        assertEquals(Opcode.RANGE, program.op(1));
+        assertEquals(0, program.offset(1));
+        assertEquals(1, program.floor(1));
+        int fast = program.arg(1);
+        assertEquals(Opcode.LOOP_START, program.op(2));
+        assertEquals(Opcode.LOOP_START, program.op(fast));
+        for (int i = fast; i < program.length(); i++) {
+            assertNotEquals(Opcode.ENSURE, program.op(i));
+            assertNotEquals(Opcode.MOVE, program.op(i));
+        }
+    }
+
+    @Test
+    public void testRangeGuardFallsBackNearCellZero() throws IOException {
+        String loop = "MoO MoO MOO MOo mOo MoO MMM MMM moO moo OOM mOo OOM";
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.OPTIMIZED, ExecutionMode.THREADED}) {
+            assertEquals(runSource(loop, ExecutionMode.OPCODE), runSource(loop, mode));
+            assertEquals(runSource("moO " + loop, ExecutionMode.OPCODE), runSource("moO " + loop, mode));
+        }
+    }
+
+    @Test
+    public void testDeeplyNestedMovingLoopsDoNotOverflowTheStack() throws IOException {
+        StringBuilder source = new StringBuilder("MoO ");
+        for (int i = 0; i < 10000; i++) {
+            source.append("MOO moO MoO ");
+        }
+        source.append("OOO ");
+        for (int i = 0; i < 10000; i++) {
+            source.append("mOo OOO moo ");
+        }
+        source.append("OOM");
+        String expected = runSource(source.toString(), ExecutionMode.OPCODE);
+        assertEquals("0", expected);
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.OPTIMIZED, ExecutionMode.THREADED,
+                ExecutionMode.BYTECODE}) {
+            if (mode != ExecutionMode.BYTECODE || BytecodeCompiler.isAvailable()) {
+                assertEquals(expected, runSource(source.toString(), mode));
+            }
+        }
+    }
+}
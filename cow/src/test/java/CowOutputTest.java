@@ -0,0 +1,88 @@
+import org.example.CowOutput;
+import org.example.FlushPolicy;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CowOutputTest {
+
+    @Test
+    public void testWriteIntFormatsWithoutStrings() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CowOutput output = new CowOutput(out);
+        output.writeInt(0);
+        output.writeInt(-17);
+        output.writeInt(Integer.MAX_VALUE);
+        output.writeInt(Integer.MIN_VALUE);
+        output.flush();
+        assertEquals("0-172147483647-2147483648", out.toString());
+    }
+
+    @Test
+    public void testWriteCharEncodesUtf8() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CowOutput output = new CowOutput(out, FlushPolicy.BUFFERED, StandardCharsets.UTF_8);
+        output.writeChar('A');
+        output.writeChar(0x416);
+        output.writeChar(0x20AC);
+        output.writeChar(0x10041);
+        output.flush();
+        assertEquals("AЖ€A", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteCharUsesGivenCharset() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CowOutput output = new CowOutput(out, FlushPolicy.BUFFERED, Charset.forName("windows-1251"));
+        output.writeChar('A');
+        output.writeChar(0x416);
+        output.writeChar(0x20AC);
+        output.writeInt(7);
+        output.flush();
+        assertArrayEquals(new byte[]{'A', (byte) 0xC6, (byte) 0x88, '7'}, out.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsCharsetThatIsNotAsciiCompatible() {
+        new CowOutput(new ByteArrayOutputStream(), FlushPolicy.BUFFERED, StandardCharsets.UTF_16);
+    }
+
+    @Test
+    public void testBufferedPolicyWritesOnlyOnFlushOrFullBuffer() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CowOutput output = new CowOutput(out, FlushPolicy.BUFFERED, 16);
+        output.writeChar('a');
+        output.writeChar('\n');
+        assertEquals(0, out.size());
+        for (int i = 0; i < 20; i++) {
+            output.writeChar('b');
+        }
+        assertTrue(out.size() > 0);
+        output.flush();
+        assertEquals(22, out.size());
+    }
+
+    @Test
+    public void testLinePolicyFlushesOnNewline() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CowOutput output = new CowOutput(out, FlushPolicy.LINE);
+        output.writeInt(42);
+        assertEquals(0, out.size());
+        output.writeChar('\n');
+        assertEquals("42\n", out.toString());
+    }
+
+    @Test
+    public void testAppendableSink() {
+        StringBuilder sb = new StringBuilder();
+        CowOutput output = CowOutput.toAppendable(sb);
+        output.writeChar(0x416);
+        output.writeInt(5);
+        output.flush();
+        assertEquals("Ж5", sb.toString());
+    }
+}
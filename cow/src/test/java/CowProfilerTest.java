@@ -0,0 +1,94 @@
+import org.example.CowInput;
+import org.example.CowInterpreter;
+import org.example.CowLimitExceededException;
+import org.example.CowOutput;
+import org.example.CowProfiler;
+import org.example.IntArrayTape;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.*;
+
+public class CowProfilerTest {
+
+    private static CowInterpreter load(String source, StringBuilder sink) throws IOException {
+        CowInterpreter interpreter = new CowInterpreter(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])), CowOutput.toAppendable(sink));
+        interpreter.loadProgram(Channels.newChannel(new ByteArrayInputStream(source.getBytes())));
+        return interpreter;
+    }
+
+    @Test
+    public void testCountsInstructionsAndLoops() throws IOException {
+        StringBuilder sink = new StringBuilder();
+        CowInterpreter interpreter = load("MoO MoO MoO MOO OOM MOo moo moO moO", sink);
+        CowProfiler profiler = new CowProfiler();
+        interpreter.setProfiler(profiler);
+        interpreter.execute();
+
+        assertEquals("321", sink.toString());
+        assertEquals(1, profiler.getCount(0));
+        assertEquals(1, profiler.getCount(3));
+        assertEquals(3, profiler.getCount(4));
+        assertEquals(3, profiler.getCount(6));
+        assertEquals(1, profiler.getLoopEntries(3));
+        assertEquals(3, profiler.getLoopIterations(3));
+        assertEquals(3 + 1 + 9 + 2, profiler.getSteps());
+        assertEquals(3, profiler.getTapeHighWater());
+    }
+
+    @Test
+    public void testSkippedLoopIsNotEntered() throws IOException {
+        CowInterpreter interpreter = load("MOO MoO moo OOM", new StringBuilder());
+        CowProfiler profiler = new CowProfiler();
+        interpreter.setProfiler(profiler);
+        interpreter.execute();
+        assertEquals(1, profiler.getCount(0));
+        assertEquals(0, profiler.getCount(1));
+        assertEquals(0, profiler.getLoopEntries(0));
+        assertEquals(2, profiler.getSteps());
+    }
+
+    @Test
+    public void testCollapsedStacksNestLoops() throws IOException {
+        CowInterpreter interpreter = load("MoO MOO moO MoO MOO MOo moo mOo MOo moo", new StringBuilder());
+        CowProfiler profiler = new CowProfiler();
+        interpreter.setProfiler(profiler);
+        interpreter.execute();
+
+        StringWriter folded = new StringWriter();
+        profiler.writeCollapsedStacks(folded);
+        String text = folded.toString();
+        assertTrue(text.contains("program;MoO@0 1\n"));
+        assertTrue(text.contains("program;MOO@1 1\n"));
+        assertTrue(text.contains("program;loop@1;MOO@4 1\n"));
+        assertTrue(text.contains("program;loop@1;loop@4;MOo@5 1\n"));
+        assertTrue(text.contains("program;loop@1;moo@9 1\n"));
+
+        StringWriter report = new StringWriter();
+        profiler.writeReport(report);
+        assertTrue(report.toString().startsWith("Total steps: " + profiler.getSteps()));
+    }
+
+    @Test
+    public void testRunStoppedByLimitKeepsItsProfile() throws IOException {
+        CowInterpreter interpreter = load("MoO MOO moO mOo moo", new StringBuilder());
+        CowProfiler profiler = new CowProfiler();
+        interpreter.setProfiler(profiler);
+        interpreter.setStepLimit(100);
+        try {
+            interpreter.execute();
+            fail();
+        } catch (CowLimitExceededException expected) {
+        }
+        assertEquals(1, profiler.getLoopEntries(1));
+        assertTrue(profiler.getLoopIterations(1) > 20);
+        assertEquals(profiler.getCount(0) + profiler.getCount(1) + profiler.getCount(2)
+                + profiler.getCount(3) + profiler.getCount(4), profiler.getSteps());
+        assertEquals(2, profiler.getTapeHighWater());
+    }
+}
@@ -0,0 +1,112 @@
+import org.example.CompiledCowProgram;
+import org.example.CowInterpreter;
+import org.example.CowOutput;
+import org.example.CowProgramCache;
+import org.example.IntArrayTape;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CowProgramCacheTest {
+    private static final String PROGRAM = "MoO MoO MoO MOO OOM MOo moo moO MoO MoO MOO moO MoO MoO mOo MOo moo moO OOM";
+
+    private Path source;
+    private Path cache;
+
+    @Before
+    public void setUp() throws IOException {
+        source = Files.createTempFile("cache", ".cow");
+        Files.write(source, PROGRAM.getBytes());
+        cache = CowProgramCache.defaultTarget(source);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(cache);
+    }
+
+    private static String run(Path file) throws IOException {
+        StringBuilder sink = new StringBuilder();
+        CowInterpreter interpreter = new CowInterpreter(new IntArrayTape(), CowOutput.toAppendable(sink));
+        interpreter.loadProgram(file.toString());
+        interpreter.execute();
+        return sink.toString();
+    }
+
+    @Test
+    public void testCachedProgramMatchesSource() throws IOException {
+        CompiledCowProgram compiled = CowProgramCache.compile(source, cache);
+        assertTrue(cache.getFileName().toString().endsWith(".cowc"));
+        assertTrue(CowProgramCache.isCache(cache));
+        assertFalse(CowProgramCache.isCache(source));
+
+        CompiledCowProgram loaded = CowProgramCache.load(cache);
+        assertEquals(compiled.getHash(), loaded.getHash());
+        assertEquals(compiled.getInstructionCount(), loaded.getInstructionCount());
+        assertEquals(compiled.getOptimizedProgram().toString(), loaded.getOptimizedProgram().toString());
+        assertEquals("3214", run(cache));
+    }
+
+    @Test
+    public void testSourceStartingWithSignatureIsNotACache() throws IOException {
+        Files.write(source, ("COWC " + PROGRAM).getBytes());
+        assertFalse(CowProgramCache.isCache(source));
+        assertEquals("3214", run(source));
+    }
+
+    @Test
+    public void testStaleCacheFallsBackToSource() throws IOException {
+        CowProgramCache.compile(source, cache);
+        Files.write(source, (PROGRAM + " OOM").getBytes());
+        Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        try {
+            CowProgramCache.load(cache);
+            fail("stale cache was accepted");
+        } catch (CowProgramCache.StaleCacheException e) {
+            assertEquals(source.toAbsolutePath(), e.getSource());
+        }
+        assertEquals("32144", run(cache));
+    }
+
+    @Test
+    public void testTouchedButUnchangedSourceKeepsCache() throws IOException {
+        CowProgramCache.compile(source, cache);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertEquals("3214", run(cache));
+        CowProgramCache.load(cache);
+    }
+
+    @Test
+    public void testRejectsOtherVersionsAndTruncatedFiles() throws IOException {
+        CowProgramCache.compile(source, cache);
+        byte[] bytes = Files.readAllBytes(cache);
+
+        bytes[7]++;
+        Files.write(cache, bytes);
+        try {
+            CowProgramCache.load(cache);
+            fail("wrong version was accepted");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("format version"));
+        }
+
+        bytes[7]--;
+        Files.write(cache, Arrays.copyOf(bytes, bytes.length - 6));
+        try {
+            CowProgramCache.load(cache);
+            fail("truncated cache was accepted");
+        } catch (IOException e) {
+            assertFalse(e instanceof CowProgramCache.StaleCacheException);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import org.example.CowTokenizer;
+import org.example.Opcode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CowTokenizerTest {
+    private static final List<String> MNEMONICS = Arrays.asList(
+            "MoO", "MOo", "moO", "mOo", "moo", "MOO", "OOM", "oom", "mOO", "Moo", "OOO", "MMM");
+
+    private static byte[] substringParse(String content) {
+        List<String> instructions = new ArrayList<>();
+        int i = 0;
+        while (i < content.length()) {
+            if (i + 2 < content.length()) {
+                String candidate = content.substring(i, i + 3);
+                if (MNEMONICS.contains(candidate)) {
+                    instructions.add(candidate);
+                    i += 3;
+                    continue;
+                }
+            }
+            i++;
+        }
+        byte[] code = new byte[instructions.size()];
+        for (int k = 0; k < code.length; k++) {
+            code[k] = Opcode.fromMnemonic(instructions.get(k));
+        }
+        return code;
+    }
+
+    private static ReadableByteChannel chunkedChannel(byte[] data, int chunk) {
+        return new ReadableByteChannel() {
+            private int pos;
+
+            @Override
+            public int read(ByteBuffer dst) {
+                if (pos == data.length) {
+                    return -1;
+                }
+                int n = Math.min(Math.min(chunk, dst.remaining()), data.length - pos);
+                dst.put(data, pos, n);
+                pos += n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    public void testRecognizesAllMnemonics() {
+        byte[] code = CowTokenizer.tokenize(String.join(" ", MNEMONICS).getBytes());
+        assertEquals(MNEMONICS.size(), code.length);
+        for (int i = 0; i < code.length; i++) {
+            assertEquals(MNEMONICS.get(i), Opcode.mnemonic(code[i]));
+        }
+    }
+
+    @Test
+    public void testOverlappingCandidatesMatchSubstringScan() {
+        String source = "MMoOmoOOOMoooMOOOmOoMMMMx MoOo";
+        assertArrayEquals(substringParse(source), CowTokenizer.tokenize(source.getBytes()));
+    }
+
+    @Test
+    public void testRandomSourcesMatchSubstringScan() {
+        Random random = new Random(42);
+        String alphabet = "MmOo \nx";
+        for (int round = 0; round < 200; round++) {
+            StringBuilder source = new StringBuilder();
+            int length = random.nextInt(300);
+            for (int i = 0; i < length; i++) {
+                source.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertArrayEquals(source.toString(), substringParse(source.toString()),
+                    CowTokenizer.tokenize(source.toString().getBytes()));
+        }
+    }
+
+    @Test
+    public void testMnemonicsSplitAcrossChannelReads() throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            source.append(MNEMONICS.get(i % MNEMONICS.size())).append(i % 3 == 0 ? "" : " filler ");
+        }
+        byte[] data = source.toString().getBytes();
+        assertArrayEquals(substringParse(source.toString()), CowTokenizer.tokenize(chunkedChannel(data, 7)));
+    }
+
+    @Test
+    public void testNonAsciiBytesResetTheWindow() {
+        byte[] source = {'M', 'o', (byte) 0xD0, 'O', 'M', 'o', 'O'};
+        byte[] code = CowTokenizer.tokenize(source);
+        assertEquals(1, code.length);
+        assertEquals("MoO", Opcode.mnemonic(code[0]));
+    }
+}
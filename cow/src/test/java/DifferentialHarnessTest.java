@@ -0,0 +1,69 @@
+import org.example.CompiledCowProgram;
+import org.example.CowProgramGenerator;
+import org.example.DifferentialHarness;
+import org.example.ExecutionMode;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DifferentialHarnessTest {
+
+    @Test
+    public void testGeneratorIsDeterministicAndWellBracketed() {
+        CowProgramGenerator first = new CowProgramGenerator(42);
+        CowProgramGenerator second = new CowProgramGenerator(42);
+        for (int i = 0; i < 200; i++) {
+            String program = first.nextProgram();
+            assertEquals(program, second.nextProgram());
+            assertArrayEquals(first.nextInput(), second.nextInput());
+
+            int depth = 0;
+            for (String token : program.split(" ")) {
+                if (token.equals("MOO")) {
+                    depth++;
+                } else if (token.equals("moo")) {
+                    depth--;
+                }
+                assertTrue(program, depth >= 0);
+            }
+            assertEquals(program, 0, depth);
+            assertTrue(CompiledCowProgram.compile(program.getBytes()).getInstructionCount() > 0);
+        }
+    }
+
+    @Test
+    public void testEnginesAgreeOnGeneratedPrograms() {
+        DifferentialHarness harness = new DifferentialHarness(
+                Arrays.asList(ExecutionMode.OPCODE, ExecutionMode.OPTIMIZED, ExecutionMode.THREADED));
+        DifferentialHarness.Report report = harness.run(new CowProgramGenerator(7), 200);
+
+        assertEquals(200, report.getPrograms());
+        assertTrue(report.getLimited() < 100);
+        assertTrue(report.getMismatches().isEmpty());
+        assertEquals(report.getPrograms() - report.getLimited(), report.getRuns(ExecutionMode.THREADED));
+        assertEquals(0, report.getRuns(ExecutionMode.BYTECODE));
+
+        StringWriter out = new StringWriter();
+        DifferentialHarness.writeReport(report, out);
+        assertTrue(out.toString().startsWith("engine\truns\ttime_ms\tmean_us\n"));
+        assertTrue(out.toString().contains("THREADED\t" + report.getRuns(ExecutionMode.THREADED) + "\t"));
+        assertTrue(out.toString().trim().endsWith(" 0 mismatches"));
+    }
+
+    @Test
+    public void testProgramsOverTheStepBudgetAreComparedUnderIt() {
+        DifferentialHarness harness = new DifferentialHarness(Arrays.asList(ExecutionMode.OPTIMIZED));
+        harness.setStepLimit(1000);
+        DifferentialHarness.Report report = new DifferentialHarness.Report();
+        harness.check("MoO MOO MoO moo", new byte[0], report);
+        harness.check("MoO MoO MoO OOM", new byte[0], report);
+
+        assertEquals(2, report.getPrograms());
+        assertEquals(1, report.getLimited());
+        assertEquals(1, report.getRuns(ExecutionMode.OPTIMIZED));
+        assertTrue(report.getMismatches().isEmpty());
+    }
+}
@@ -0,0 +1,137 @@
+import org.example.BytecodeCompiler;
+import org.example.CompiledCowProgram;
+import org.example.CowExecution;
+import org.example.CowInput;
+import org.example.CowLimitExceededException;
+import org.example.CowOutput;
+import org.example.CowProfiler;
+import org.example.ExecutionMode;
+import org.example.IntArrayTape;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExecutionLimitTest {
+
+    private static List<ExecutionMode> modes() {
+        List<ExecutionMode> modes = new ArrayList<>();
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode != ExecutionMode.BYTECODE || BytecodeCompiler.isAvailable()) {
+                modes.add(mode);
+            }
+        }
+        return modes;
+    }
+
+    private static CowExecution execution(String source, ExecutionMode mode, StringBuilder sink) {
+        CowExecution execution = CompiledCowProgram.compile(source.getBytes()).newExecution(new IntArrayTape(),
+                new CowInput(new ByteArrayInputStream(new byte[0])), CowOutput.toAppendable(sink));
+        execution.setExecutionMode(mode);
+        return execution;
+    }
+
+    @Test
+    public void testInfiniteLoopStopsAtStepLimitInEveryEngine() {
+        for (ExecutionMode mode : modes()) {
+            CowExecution execution = execution("MoO OOM MOO moO mOo moo", mode, new StringBuilder());
+            execution.setStepLimit(1000);
+            try {
+                execution.run();
+                fail(mode + " did not stop");
+            } catch (CowLimitExceededException e) {
+                assertEquals(mode.toString(), 5, e.getPc());
+                assertEquals(mode.toString(), 1004, e.getSteps());
+                assertTrue(e.getMessage().contains("Step limit of 1000"));
+            }
+        }
+    }
+
+    @Test
+    public void testTapeLimitStopsRunawayPointer() {
+        for (ExecutionMode mode : modes()) {
+            CowExecution execution = execution("MoO MOO moO MoO moo", mode, new StringBuilder());
+            execution.setMaxTapeSize(100);
+            try {
+                execution.run();
+                fail(mode + " did not stop");
+            } catch (CowLimitExceededException e) {
+                assertEquals(4, e.getPc());
+                assertTrue(e.getMessage().contains("Tape limit of 100 cells"));
+                assertTrue(execution.getTape().size() <= 101);
+            }
+        }
+    }
+
+    @Test
+    public void testTerminatingProgramRunsWithinBudget() {
+        String source = "MoO MoO MoO MOO OOM MOo moo";
+        for (ExecutionMode mode : modes()) {
+            StringBuilder sink = new StringBuilder();
+            CowExecution execution = execution(source, mode, sink);
+            execution.setStepLimit(100);
+            execution.setMaxTapeSize(1);
+            execution.run();
+            assertEquals("321", sink.toString());
+            assertEquals(mode.toString(), 8, execution.getSteps());
+        }
+    }
+
+    @Test
+    public void testIdiomLoopsAreChargedLikeLiteralLoops() {
+        String body = "MoO MoO MoO MoO MoO MOO moO MoO MoO moO MoO mOo mOo MOo moo moO MOO MOo moo OOM";
+        String endless = body + " moO MOO MoO moo";
+        for (String source : new String[]{body, endless, "oom " + endless}) {
+            for (long limit = 1; limit <= 80; limit++) {
+                String expected = outcome(source, ExecutionMode.REFERENCE, limit);
+                for (ExecutionMode mode : modes()) {
+                    assertEquals(mode + " " + limit + " " + source, expected, outcome(source, mode, limit));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testClearLoopDoesNotGrowTapeForLaterMoves() {
+        for (ExecutionMode mode : modes()) {
+            CowExecution execution = execution("MoO MoO MoO MOO MOo moo moO moO moO", mode, new StringBuilder());
+            execution.setMaxTapeSize(2);
+            try {
+                execution.run();
+                fail(mode + " did not stop");
+            } catch (CowLimitExceededException e) {
+                assertEquals(mode.toString(), 9, e.getPc());
+                assertEquals(mode.toString(), 6, e.getSteps());
+            }
+        }
+    }
+
+    private static String outcome(String source, ExecutionMode mode, long limit) {
+        StringBuilder sink = new StringBuilder();
+        CowExecution execution = execution(source, mode, sink);
+        execution.setStepLimit(limit);
+        String result;
+        try {
+            execution.run();
+            result = "done " + execution.getSteps();
+        } catch (CowLimitExceededException e) {
+            result = "limit " + e.getSteps() + " at " + e.getPc();
+        }
+        StringBuilder cells = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            cells.append(' ').append(execution.getTape().get(i));
+        }
+        return result + cells + " " + sink;
+    }
+
+    @Test(expected = CowLimitExceededException.class)
+    public void testProfiledRunHonoursStepLimit() {
+        CowExecution execution = execution("MoO MOO moo", ExecutionMode.OPCODE, new StringBuilder());
+        execution.setProfiler(new CowProfiler());
+        execution.setStepLimit(10);
+        execution.run();
+    }
+}
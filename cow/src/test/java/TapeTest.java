@@ -0,0 +1,220 @@
+import org.example.BytecodeCompiler;
+import org.example.ByteArrayTape;
+import org.example.CowInput;
+import org.example.CowInterpreter;
+import org.example.CowOutput;
+import org.example.ExecutionMode;
+import org.example.IntArrayTape;
+import org.example.OffHeapTape;
+import org.example.PagedTape;
+import org.example.ShortArrayTape;
+import org.example.Tape;
+import org.example.TapeKind;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class TapeTest {
+
+    @Test
+    public void testIntArrayTapeStartsWithSingleZeroCell() {
+        Tape tape = new IntArrayTape();
+        assertEquals(1, tape.size());
+        assertEquals(0, tape.get(0));
+    }
+
+    @Test
+    public void testIntArrayTapeGrowsPastInitialCapacity() {
+        Tape tape = new IntArrayTape(4);
+        tape.ensure(10000);
+        tape.set(10000, 7);
+        tape.add(10000, -2);
+        assertEquals(10001, tape.size());
+        assertEquals(5, tape.get(10000));
+        assertEquals(0, tape.get(9999));
+    }
+
+    @Test
+    public void testIntArrayTapeClearResetsCells() {
+        Tape tape = new IntArrayTape(4);
+        tape.ensure(3);
+        tape.set(3, 42);
+        tape.clear();
+        assertEquals(1, tape.size());
+        tape.ensure(3);
+        assertEquals(0, tape.get(3));
+    }
+
+    @Test
+    public void testPagedTapeAllocatesPagesLazily() {
+        PagedTape tape = new PagedTape();
+        tape.ensure(10 * PagedTape.PAGE_SIZE);
+        assertEquals(10 * PagedTape.PAGE_SIZE + 1, tape.size());
+        assertEquals(0, tape.get(10 * PagedTape.PAGE_SIZE));
+        assertEquals(0, tape.getAllocatedPages());
+
+        tape.set(10 * PagedTape.PAGE_SIZE, 0);
+        tape.add(5, 0);
+        assertEquals(0, tape.getAllocatedPages());
+
+        tape.add(10 * PagedTape.PAGE_SIZE, 3);
+        tape.set(PagedTape.PAGE_SIZE - 1, 9);
+        assertEquals(2, tape.getAllocatedPages());
+        assertEquals(3, tape.get(10 * PagedTape.PAGE_SIZE));
+        assertEquals(9, tape.get(PagedTape.PAGE_SIZE - 1));
+        assertEquals(0, tape.get(PagedTape.PAGE_SIZE));
+    }
+
+    @Test
+    public void testPagedTapeClearDropsPages() {
+        PagedTape tape = new PagedTape();
+        tape.ensure(100000);
+        tape.set(100000, 1);
+        tape.clear();
+        assertEquals(1, tape.size());
+        assertEquals(0, tape.getAllocatedPages());
+        tape.ensure(100000);
+        assertEquals(0, tape.get(100000));
+    }
+
+    @Test
+    public void testInterpreterRunsOnPagedTape() throws Exception {
+        StringBuilder program = new StringBuilder("oom MoO MoO MoO MOO MOo MMM");
+        for (int i = 0; i < 5000; i++) {
+            program.append(" moO");
+        }
+        program.append(" MMM moo moO OOM");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PagedTape tape = new PagedTape();
+        CowInterpreter interpreter = new CowInterpreter(tape,
+                new CowInput(new ByteArrayInputStream(new byte[0])), new CowOutput(bytes));
+        interpreter.loadProgram(Channels.newChannel(new ByteArrayInputStream(program.toString().getBytes())));
+        interpreter.execute();
+        assertEquals("0", bytes.toString());
+        assertEquals(15002, tape.size());
+        assertEquals(3, tape.getAllocatedPages());
+    }
+
+    @Test
+    public void testOffHeapTapeKeepsCellsOutsideHeap() {
+        OffHeapTape tape = new OffHeapTape();
+        int far = 3 * OffHeapTape.CHUNK_CELLS + 17;
+        tape.ensure(far);
+        assertEquals(0, tape.get(far));
+        assertEquals(0, tape.getAllocatedBytes());
+
+        tape.set(far, -5);
+        tape.add(far, 2);
+        tape.add(0, 1);
+        assertEquals(-3, tape.get(far));
+        assertEquals(1, tape.get(0));
+        assertEquals(2L * OffHeapTape.CHUNK_CELLS * Integer.BYTES, tape.getAllocatedBytes());
+
+        tape.clear();
+        assertEquals(1, tape.size());
+        assertEquals(0, tape.getAllocatedBytes());
+        tape.ensure(far);
+        assertEquals(0, tape.get(far));
+        tape.close();
+    }
+
+    @Test
+    public void testMappedTapeWritesThroughToFile() throws Exception {
+        Path file = Files.createTempFile("tape", ".bin");
+        try {
+            OffHeapTape tape = OffHeapTape.mapped(file);
+            tape.ensure(OffHeapTape.CHUNK_CELLS + 1);
+            tape.set(OffHeapTape.CHUNK_CELLS + 1, 42);
+            assertTrue(tape.isFileBacked());
+            assertEquals(42, tape.get(OffHeapTape.CHUNK_CELLS + 1));
+            assertEquals(2L * OffHeapTape.CHUNK_CELLS * Integer.BYTES, Files.size(file));
+
+            tape.clear();
+            assertEquals(0, Files.size(file));
+            tape.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMappedTapeKindUsesChosenFile() throws Exception {
+        Path file = Files.createTempFile("tape", ".bin");
+        try {
+            Tape tape = TapeKind.MAPPED.create(32, file);
+            tape.ensure(OffHeapTape.CHUNK_CELLS);
+            tape.set(OffHeapTape.CHUNK_CELLS, 7);
+            assertEquals(2L * OffHeapTape.CHUNK_CELLS * Integer.BYTES, Files.size(file));
+            tape.close();
+            assertTrue(Files.exists(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnlyMappedTapeAcceptsFile() {
+        TapeKind.OFFHEAP.create(32, Paths.get("tape.bin"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOffHeapTapeRejectsWritesAfterClose() {
+        OffHeapTape tape = new OffHeapTape();
+        tape.close();
+        tape.set(0, 1);
+    }
+
+    @Test
+    public void testNarrowTapesWrapUnsigned() {
+        Tape bytes = new ByteArrayTape(4);
+        bytes.add(0, -1);
+        assertEquals(255, bytes.get(0));
+        bytes.add(0, 3);
+        assertEquals(2, bytes.get(0));
+        bytes.set(0, 300);
+        assertEquals(44, bytes.get(0));
+        assertEquals(8, bytes.cellBits());
+
+        Tape shorts = new ShortArrayTape(4);
+        shorts.ensure(10);
+        shorts.set(10, -2);
+        assertEquals(65534, shorts.get(10));
+        assertEquals(16, shorts.cellBits());
+        assertEquals(32, new IntArrayTape().cellBits());
+    }
+
+    @Test
+    public void testEveryEngineWrapsNarrowCells() throws Exception {
+        String program = "MOo OOM moO MoO MoO MOO mOo MoO MoO MoO moO MOo moo mOo OOM";
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            if (mode == ExecutionMode.BYTECODE && !BytecodeCompiler.isAvailable()) {
+                continue;
+            }
+            assertEquals(mode.toString(), "2555", run(program, mode, TapeKind.DENSE.create(8)));
+            assertEquals(mode.toString(), "655355", run(program, mode, TapeKind.DENSE.create(16)));
+            assertEquals(mode.toString(), "-15", run(program, mode, TapeKind.DENSE.create(32)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPagedTapeRejectsNarrowCells() {
+        TapeKind.PAGED.create(8);
+    }
+
+    private static String run(String program, ExecutionMode mode, Tape tape) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CowInterpreter interpreter = new CowInterpreter(tape,
+                new CowInput(new ByteArrayInputStream(new byte[0])), new CowOutput(bytes));
+        interpreter.setExecutionMode(mode);
+        interpreter.loadProgram(Channels.newChannel(new ByteArrayInputStream(program.getBytes())));
+        interpreter.execute();
+        return bytes.toString();
+    }
+}